@@ -1,12 +1,16 @@
 package dc;
 
 import dc.controller.LevelController;
+import dc.controller.ThreadedModel;
 import dc.model.*;
+import dc.view.CanvasLevelView;
 import dc.view.LevelView;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.nio.file.Paths;
+
 /**
  * Starts DisCaptive
  * Combines MVC.
@@ -16,15 +20,28 @@ Wahlpflichtteil: Kraftfelder und Schlösser.
 Zusatzlevel: 31-36
 Level können neu gestartet werden.
 Es können mehrere Level hintereinander gespielt werden, jedoch nur für eine View gelöst.
+Mit --renderer=canvas wird das Spielfeld auf ein einzelnes Canvas gezeichnet (für sehr große Level).
+Mit --simulation=thread laufen die Züge auf einem eigenen Thread, die Oberfläche bleibt dabei bedienbar.
+Mit --record=<Ordner> wird jeder Versuch als Replay in den Ordner geschrieben, lesbar mit dc.model.ReplayReader.
  */
 public class DisCaptive extends Application {
     //private static String[] arguments;
+    private LevelController controller;
 
     public void start(Stage stage){
        // int i = Integer.parseInt(arguments[0]);
-        Level model = new Level(1);
-        LevelController controller = new LevelController(model);
-        LevelView view = new LevelView(model, controller);
+        TileBoardModel<Tile> model = new Level(1);
+        if ("thread".equals(getParameters().getNamed().get("simulation")))
+            model = new ThreadedModel<>(model);
+        controller = new LevelController(model);
+        String record = getParameters().getNamed().get("record");
+        if (record != null)
+            controller.startRecording(Paths.get(record));
+        LevelView view;
+        if ("canvas".equals(getParameters().getNamed().get("renderer")))
+            view = new CanvasLevelView(model, controller);
+        else
+            view = new LevelView(model, controller);
         Scene scene = new Scene(view);
 
         stage.setTitle("DisCaptive: You ain't going nowhere!");
@@ -33,6 +50,10 @@ public class DisCaptive extends Application {
         stage.show();
         view.requestFocus();
     }
+
+    public void stop() {
+        controller.stopRecording();                         // completes the last replay
+    }
     public static void main (String[] args) {
        // arguments = args;
         launch(args);
@@ -0,0 +1,96 @@
+package dc.bench;
+
+import dc.model.DynamicDistanceField;
+import dc.model.Level;
+import dc.model.Tile;
+import dc.model.TileKind;
+import dc.util.Out;
+
+import java.util.Random;
+
+/**
+ * Compares repairing a distance field after a box moves with searching it again from scratch.
+ * Runs on Level420 and on generated maps with 20% walls and a box on every 20th free cell; the boxes take
+ * random steps onto free cells, every step frees one cell and blocks another.
+ */
+public class DistanceFieldBenchmark {
+    private static final int MOVES = 4000;
+
+    public static void main(String[] args) {
+        Level level = new Level(420);
+        int height = level.getHeight(), width = level.getWidth();
+        boolean[] open = new boolean[height * width];
+        for (int row = 0; row < height; row++)
+            for (int col = 0; col < width; col++) {
+                Tile top = level.getTopTileAt(row, col);
+                TileKind kind = level.getBottomTileAt(row, col).getKind();
+                open[row * width + col] = kind != TileKind.WALL && kind != TileKind.GAP && kind != TileKind.LOCK
+                        && kind != TileKind.FORCE_FIELD && (top == null || top.getKind() != TileKind.BOX && top.getKind() != TileKind.BOX_OVER_GOAL);
+            }
+        run("Level420", open, width, new Random(42));
+        for (int size : new int[]{100, 300, 1000})
+            run(size + " x " + size, generate(size, new Random(size)), size, new Random(42));
+    }
+
+    private static boolean[] generate(int size, Random random) {
+        boolean[] open = new boolean[size * size];
+        for (int cell = 0; cell < open.length; cell++)
+            open[cell] = random.nextInt(5) > 0;
+        return open;
+    }
+
+    private static void run(String name, boolean[] open, int width, Random random) {
+        int[] boxes = new int[open.length / 20 + 1];
+        int count = 0;
+        for (int cell = 0; cell < open.length && count < boxes.length; cell += 20)
+            if (open[cell]) {
+                open[cell] = false;
+                boxes[count++] = cell;
+            }
+        int target = open.length / 2 + width / 2;             // somewhere in the middle
+        while (!open[target])
+            target = (target + 1) % open.length;
+        DynamicDistanceField repaired = new DynamicDistanceField(open, width, target);
+        DynamicDistanceField searched = new DynamicDistanceField(open, width, target);
+        long repairTime = 0, searchTime = 0, visited = 0, sink = 0;
+        int done = 0;
+        for (int i = 0; i < MOVES; i++) {
+            int b = random.nextInt(count);
+            int from = boxes[b];
+            int to = neighbour(from, width, open.length, random.nextInt(4));
+            if (to < 0 || !open[to] || to == target)
+                continue;
+            open[from] = true;
+            open[to] = false;
+            boxes[b] = to;
+            done++;
+            long start = System.nanoTime();
+            repaired.cellChanged(from);
+            visited += repaired.getVisited();
+            repaired.cellChanged(to);
+            visited += repaired.getVisited();
+            repairTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            searched.recompute();
+            searchTime += System.nanoTime() - start;
+            sink += repaired.distanceAt(from) - searched.distanceAt(from);
+        }
+        Out.printf("%-10s repair %9.2f us (%6.1f cells)  search %9.2f us  per box move%n", name,
+                repairTime / 1000.0 / done, visited / (double) done, searchTime / 1000.0 / done);
+        if (sink != 0)
+            Out.println("the repaired field differs from the searched one");
+    }
+
+    private static int neighbour(int cell, int width, int length, int direction) {
+        switch (direction) {
+            case 0:
+                return cell >= width ? cell - width : -1;
+            case 1:
+                return cell + width < length ? cell + width : -1;
+            case 2:
+                return cell % width > 0 ? cell - 1 : -1;
+            default:
+                return cell % width < width - 1 ? cell + 1 : -1;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package dc.bench;
+
+import dc.controller.Movement;
+import dc.model.EntityStore;
+import dc.util.Out;
+
+import java.io.File;
+import java.util.Iterator;
+
+/**
+ * Compares visiting entities in an EntityStore with visiting them in the linked dc.model.List the model used
+ * before, which is copied below. The entities are spread over the heap like guards that were created while a map
+ * was read, with other objects allocated in between. Every pass adds up a field of all entities, so the loads
+ * can't be left out.
+ * Then times Level.move on every "Level*.txt" in the working directory, the way MoveBenchmark does.
+ */
+public class EntityStoreBenchmark {
+    private static final int[] SIZES = {16, 420, 10000};
+    private static final int PASSES = 20000000;
+
+    private static class Entity {
+        final int x;
+
+        Entity(int x) {
+            this.x = x;
+        }
+    }
+
+    public static void main(String[] args) {
+        long sink = 0;
+        for (int size : SIZES) {
+            EntityStore<Entity> store = new EntityStore<>();
+            List<Entity> list = new List<>();
+            Object[] garbage = new Object[size];
+            for (int i = 0; i < size; i++) {
+                Entity entity = new Entity(i);
+                garbage[i] = new int[16];
+                store.add(entity);
+                list.append(entity);
+            }
+            int passes = Math.max(PASSES / size, 10);
+            for (int round = 0; round < 2; round++) {         // the first round warms up
+                long start = System.nanoTime();
+                for (int p = 0; p < passes; p++)
+                    sink += sum(store);
+                long storeTime = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int p = 0; p < passes; p++)
+                    sink += sum(list);
+                long listTime = System.nanoTime() - start;
+                if (round == 1) {
+                    Out.printf("%6d entities  store %8.2f ns/entity  List %8.2f ns/entity%n", size,
+                            storeTime / (double) passes / size, listTime / (double) passes / size);
+                }
+            }
+            sink += garbage.length;
+        }
+
+        File[] files = LevelLoadBenchmark.levelFiles(args.length > 0 ? args[0] : ".");
+        Movement[] tape = MoveBenchmark.tape();
+        long turns = 0, time = 0;
+        for (File file : files) {
+            long[] result = MoveBenchmark.measure(file, tape);
+            turns += result[0];
+            time += result[1];
+        }
+        Out.printf("Level.move on %d levels  %10.0f turns/s%n", files.length, turns * 1e9 / time);
+        Out.println("(" + sink + ")");
+    }
+
+    private static long sum(EntityStore<Entity> store) {
+        long sum = 0;
+        for (int i = 0; i < store.size(); i++)
+            sum += store.get(i).x;
+        return sum;
+    }
+
+    private static long sum(List<Entity> list) {
+        long sum = 0;
+        for (Entity entity : list)
+            sum += entity.x;
+        return sum;
+    }
+
+    /**
+     * The parts of the old dc.model.List that the model used for its guards, boxes and forcefields:
+     * append and iteration.
+     */
+    private static class List<T> implements Iterable<T> {
+        Node head, tail;
+
+        public Iterator<T> iterator() {
+            return this.new ListIterator();
+        }
+
+        void append(T val) {
+            Node p = new Node(val);
+            if (head == null)
+                head = p;
+            else
+                tail.next = p;
+            tail = p;
+        }
+
+        class Node {
+            T val;
+            Node next;
+
+            Node(T v) {
+                val = v;
+            }
+        }
+
+        private class ListIterator implements Iterator<T> {
+            private Node pos;
+
+            private ListIterator() {
+                pos = head;
+            }
+
+            public T next() {
+                T res = pos.val;
+                pos = pos.next;
+                return res;
+            }
+
+            public boolean hasNext() {
+                return pos != null;
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package dc.bench;
+
+import dc.model.LevelCatalog;
+import dc.model.LevelLoader;
+import dc.util.In;
+import dc.util.Out;
+
+import java.io.File;
+import java.nio.file.Paths;
+
+/**
+ * Compares the old three-pass reading through dc.util.In with the single-pass LevelLoader,
+ * and with reading the whole catalog in parallel.
+ * Runs over every "Level*.txt" in the working directory.
+ */
+public class LevelLoadBenchmark {
+    private static final int WARMUP = 200;
+    private static final int ROUNDS = 2000;
+
+    public static void main(String[] args) {
+        File[] files = levelFiles(args.length > 0 ? args[0] : ".");
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++)
+            for (File f : files)
+                sink += readThreePasses(f.getPath()) + readOnce(f.getPath());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++)
+            for (File f : files)
+                sink += readThreePasses(f.getPath());
+        long threePasses = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++)
+            for (File f : files)
+                sink += readOnce(f.getPath());
+        long once = System.nanoTime() - start;
+
+        LevelCatalog catalog = new LevelCatalog(Paths.get(args.length > 0 ? args[0] : "."));
+        for (int i = 0; i < WARMUP; i++)
+            sink += catalog.loadAll().size();
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++)
+            sink += catalog.loadAll().size();
+        long parallel = System.nanoTime() - start;
+
+        long loads = (long) ROUNDS * files.length;
+        Out.printf("%d files, %d loads each%n", files.length, ROUNDS);
+        Out.printf("In, three passes:  %8.2f us/level%n", threePasses / 1000.0 / loads);
+        Out.printf("LevelLoader:       %8.2f us/level%n", once / 1000.0 / loads);
+        Out.printf("catalog, parallel: %8.2f us/level on %d cores%n", parallel / 1000.0 / loads,
+                Runtime.getRuntime().availableProcessors());
+        Out.println("(" + sink + ")");
+    }
+
+    /**
+     * Finds all level files in a directory.
+     * @param dir directory
+     * @return the level files
+     */
+    static File[] levelFiles(String dir) {
+        File[] files = new File(dir).listFiles((d, name) -> name.startsWith("Level") && name.endsWith(".txt"));
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * The way Level used to read a map: height, width and map each open the file again.
+     */
+    private static long readThreePasses(String name) {
+        int height = 0, width = 0;
+        In.open(name);
+        do {
+            In.readLine();
+            height++;
+        } while (In.done());
+        In.close();
+        height--;
+
+        In.open(name);
+        do {
+            String line = In.readLine();
+            if (line.length() > width)
+                width = line.length();
+        } while (In.done());
+        In.close();
+
+        long sum = 0;
+        In.open(name);
+        for (int p = 0; p < height; p++)
+            for (char c : In.readLine().toCharArray())
+                sum += c;
+        In.close();
+        return sum + width;
+    }
+
+    private static long readOnce(String name) {
+        LevelLoader file = LevelLoader.read(name);
+        long sum = 0;
+        for (int p = 0; p < file.getHeight(); p++)
+            for (int i = 0; i < file.getLineLength(p); i++)
+                sum += file.charAt(p, i);
+        return sum + file.getWidth();
+    }
+}
@@ -0,0 +1,106 @@
+package dc.bench;
+
+import dc.controller.Movement;
+import dc.model.Level;
+import dc.util.Out;
+import dc.view.TileBoardView;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Measures how many turns per second Level.move manages on every "Level*.txt" in the working directory.
+ * Plays the same random moves on every run; a game that is won or lost is started again on a fresh level.
+ * Only the calls to move are timed.
+ */
+public class MoveBenchmark {
+    private static final int WARMUP = 200;
+    private static final int GAMES = 2000;
+    private static final int TURNS = 200;
+
+    public static void main(String[] args) {
+        File[] files = LevelLoadBenchmark.levelFiles(args.length > 0 ? args[0] : ".");
+        Movement[] tape = tape();
+
+        long totalTurns = 0, totalTime = 0;
+        for (File file : files) {
+            long[] result = measure(file, tape);
+            Out.printf("%-14s %10.0f turns/s%n", file.getName(), result[0] * 1e9 / result[1]);
+            totalTurns += result[0];
+            totalTime += result[1];
+        }
+        Out.printf("all levels     %10.0f turns/s%n", totalTurns * 1e9 / totalTime);
+    }
+
+    /**
+     * Returns the random moves every run plays.
+     * @return the tape
+     */
+    static Movement[] tape() {
+        Movement[] tape = new Movement[TURNS];
+        Random random = new Random(42);
+        for (int i = 0; i < tape.length; i++)
+            tape[i] = Movement.values()[random.nextInt(4)];
+        return tape;
+    }
+
+    /**
+     * Warms up on a level file, then plays all games on it.
+     * @param file the level file, named "Level<no>.txt"
+     * @param tape the moves
+     * @return the played turns and the nanoseconds they took
+     */
+    static long[] measure(File file, Movement[] tape) {
+        String name = file.getName();
+        int no = Integer.parseInt(name.substring(5, name.length() - 4));
+        for (int i = 0; i < WARMUP; i++)
+            play(no, tape, i, new long[2]);
+        long[] result = new long[2];
+        for (int i = 0; i < GAMES; i++)
+            play(no, tape, i, result);
+        return result;
+    }
+
+    /**
+     * Plays one game until it ends or the tape runs out.
+     * @param offset where on the tape the game starts
+     * @param result adds the played turns and the nanoseconds they took
+     */
+    private static void play(int no, Movement[] tape, int offset, long[] result) {
+        Level level = new Level(no);
+        Ending ending = new Ending();
+        level.registerView(ending);
+        int turns = 0;
+        long start = System.nanoTime();
+        while (!ending.over && turns < tape.length) {
+            level.move(tape[(offset + turns) % tape.length]);
+            turns++;
+        }
+        result[1] += System.nanoTime() - start;
+        result[0] += turns;
+    }
+
+    /**
+     * Only listens for the end of the game.
+     */
+    private static class Ending implements TileBoardView {
+        boolean over;
+
+        public void updateTile(int rowNr, int colNr) {
+        }
+
+        public void updateStatusLine(String text) {
+        }
+
+        public void announceLevelComplete() {
+            over = true;
+        }
+
+        public void announceLevelLost() {
+            over = true;
+        }
+
+        public void updateView() {
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package dc.bench;
+
+import dc.controller.Movement;
+import dc.model.CompactLevel;
+import dc.model.ReplayReader;
+import dc.model.ReplayWriter;
+import dc.util.Out;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Writes a replay of 100000 turns on a level, by default Level420, and reads it again.
+ * The movements go in runs, like a player holding a key: 4 out of 5 repeat the one before.
+ * Shows the size per turn, how long writing and reading take per turn, and how long it takes to get the level
+ * to a random turn with seek compared to playing the replay from the start.
+ */
+public class ReplayBenchmark {
+    private static final int TURNS = 100000;
+    private static final int SEEKS = 200;
+
+    public static void main(String[] args) throws IOException {
+        int no = args.length > 0 ? Integer.parseInt(args[0]) : 420;
+        Random random = new Random(42);
+        Movement[] tape = new Movement[TURNS];
+        for (int i = 0; i < TURNS; i++)
+            tape[i] = i > 0 && random.nextInt(5) > 0 ? tape[i - 1] : Movement.values()[random.nextInt(4)];
+        Path file = Files.createTempFile("bench", ".replay");
+        try {
+            long write = 0, read = 0;
+            for (int round = 0; round < 5; round++) {         // the first rounds warm up
+                Files.delete(file);
+                long start = System.nanoTime();
+                try (ReplayWriter writer = new ReplayWriter(FileChannel.open(file, StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE_NEW), no, ReplayWriter.DEFAULT_KEYFRAME_INTERVAL)) {
+                    for (Movement move : tape)
+                        writer.record(move);
+                }
+                write = System.nanoTime() - start;
+                start = System.nanoTime();
+                try (ReplayReader reader = ReplayReader.open(file)) {
+                    while (reader.next() != null)
+                        ;
+                }
+                read = System.nanoTime() - start;
+            }
+            Out.printf("Level%d, %d turns, keyframe every %d turns%n", no, TURNS, ReplayWriter.DEFAULT_KEYFRAME_INTERVAL);
+            Out.printf("size:  %8.3f bits per turn (%d bytes)%n", Files.size(file) * 8.0 / TURNS, Files.size(file));
+            Out.printf("write: %8.3f us per turn, with playing it%n", write / 1000.0 / TURNS);
+            Out.printf("read:  %8.3f us per turn%n", read / 1000.0 / TURNS);
+
+            try (ReplayReader reader = ReplayReader.open(file)) {
+                CompactLevel level = new CompactLevel(no);
+                int[] turns = new int[SEEKS];
+                for (int i = 0; i < SEEKS; i++)
+                    turns[i] = random.nextInt(TURNS + 1);
+                long seek = 0, replay = 0;
+                for (int round = 0; round < 2; round++) {
+                    long start = System.nanoTime();
+                    for (int turn : turns)
+                        reader.seek(turn, level);
+                    seek = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    for (int i = 0; i < SEEKS / 10; i++) {        // from the start it takes much longer
+                        reader.seek(0, level);
+                        for (int t = 0; t < turns[i]; t++)
+                            level.move(reader.next());
+                    }
+                    replay = System.nanoTime() - start;
+                }
+                Out.printf("seek:        %10.1f us per random turn%n", seek / 1000.0 / SEEKS);
+                Out.printf("from start:  %10.1f us per random turn%n", replay / 1000.0 / (SEEKS / 10));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
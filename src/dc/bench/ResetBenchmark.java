@@ -0,0 +1,61 @@
+package dc.bench;
+
+import dc.controller.Movement;
+import dc.model.CompactLevel;
+import dc.model.Level;
+import dc.model.LevelLoader;
+import dc.util.Out;
+
+/**
+ * Measures how long resetLevel takes on Level420, for Level and for CompactLevel.
+ * Reading the textfile, which resetLevel used to do every time, is timed as well for comparison.
+ * A few moves are made before every reset, so there is something to put back.
+ */
+public class ResetBenchmark {
+    private static final int WARMUP = 20000;
+    private static final int ROUNDS = 200000;
+
+    public static void main(String[] args) {
+        int no = args.length > 0 ? Integer.parseInt(args[0]) : 420;
+        Level level = new Level(no);
+        CompactLevel compact = new CompactLevel(no);
+        String name = "Level" + no + ".txt";
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += reset(level) + reset(compact);
+            sink += LevelLoader.read(name).getWidth();
+        }
+
+        long levelTime = 0, compactTime = 0, readTime = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            levelTime += reset(level);
+            compactTime += reset(compact);
+        }
+        for (int i = 0; i < ROUNDS / 10; i++) {
+            long start = System.nanoTime();
+            sink += LevelLoader.read(name).getWidth();
+            readTime += System.nanoTime() - start;
+        }
+        Out.printf("%s, %d resets each%n", name, ROUNDS);
+        Out.printf("Level.resetLevel:        %8.3f us%n", levelTime / 1000.0 / ROUNDS);
+        Out.printf("CompactLevel.resetLevel: %8.3f us%n", compactTime / 1000.0 / ROUNDS);
+        Out.printf("reading the file:        %8.3f us%n", readTime / 1000.0 / (ROUNDS / 10));
+        Out.println("(" + sink + ")");
+    }
+
+    private static long reset(Level level) {
+        level.move(Movement.LEFT);
+        level.move(Movement.UP);
+        long start = System.nanoTime();
+        level.resetLevel();
+        return System.nanoTime() - start;
+    }
+
+    private static long reset(CompactLevel level) {
+        level.move(Movement.LEFT);
+        level.move(Movement.UP);
+        long start = System.nanoTime();
+        level.resetLevel();
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,50 @@
+package dc.bench;
+
+import dc.controller.Movement;
+import dc.model.Level;
+import dc.util.Out;
+
+import java.util.Random;
+
+/**
+ * Measures how long Level.routeTo takes on a level, by default Level420.
+ * The clicks go to a few cells over and over, like a player does, so most answers come from the cached
+ * distance fields; clicks on a new cell every time are timed as well, they have to search the whole map.
+ */
+public class RouteBenchmark {
+    private static final int ROUNDS = 200000;
+
+    public static void main(String[] args) {
+        int no = args.length > 0 ? Integer.parseInt(args[0]) : 420;
+        Level level = new Level(no);
+        int height = level.getHeight(), width = level.getWidth();
+        Random random = new Random(42);
+        int[] targets = new int[8];
+        for (int i = 0; i < targets.length; i++)
+            targets[i] = random.nextInt(height * width);
+
+        long sink = 0;
+        for (int round = 0; round < 2; round++) {             // the first round warms up
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++)
+                sink += length(level.routeTo(targets[i % targets.length] / width, targets[i % targets.length] % width));
+            long cached = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS / 100; i++) {
+                int target = random.nextInt(height * width);
+                sink += length(level.routeTo(target / width, target % width));
+            }
+            long searched = System.nanoTime() - start;
+            if (round == 1) {
+                Out.printf("Level%d, %d x %d%n", no, height, width);
+                Out.printf("same cells: %10.3f us per route%n", cached / 1000.0 / ROUNDS);
+                Out.printf("new cells:  %10.3f us per route%n", searched / 1000.0 / (ROUNDS / 100));
+            }
+        }
+        Out.println("(" + sink + ")");
+    }
+
+    private static int length(Movement[] route) {
+        return route == null ? -1 : route.length;
+    }
+}
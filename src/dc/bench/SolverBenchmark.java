@@ -0,0 +1,29 @@
+package dc.bench;
+
+import dc.controller.Movement;
+import dc.model.CompactLevel;
+import dc.model.Solver;
+import dc.util.Out;
+
+import java.io.File;
+
+/**
+ * Solves every "Level*.txt" in the working directory and prints length of the solution, visited states and time.
+ */
+public class SolverBenchmark {
+
+    public static void main(String[] args) {
+        long total = System.nanoTime();
+        for (File file : LevelLoadBenchmark.levelFiles(args.length > 0 ? args[0] : ".")) {
+            String name = file.getName();
+            int no = Integer.parseInt(name.substring(5, name.length() - 4));
+            long start = System.nanoTime();
+            Solver solver = new Solver(new CompactLevel(no));
+            Movement[] solution = solver.solve();
+            double ms = (System.nanoTime() - start) / 1e6;
+            String result = solution != null ? solution.length + " moves" : solver.isComplete() ? "unsolvable" : "gave up";
+            Out.printf("%-14s %-12s %10d states %10.1f ms%n", name, result, solver.getVisited(), ms);
+        }
+        Out.printf("total %.1f ms on %d cores%n", (System.nanoTime() - total) / 1e6, Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,106 @@
+package dc.bench;
+
+import dc.controller.LevelController;
+import dc.controller.Movement;
+import dc.model.Level;
+import dc.model.Outcome;
+import dc.util.Out;
+import dc.view.CanvasLevelView;
+import dc.view.LevelView;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import java.util.Random;
+
+/**
+ * Checks that playing doesn't make the view grow: plays 100000 random moves on a shown LevelView and compares
+ * the number of nodes in the scene graph and the used heap before and after.
+ * A game that is won or lost is started again. The moves are played in batches, so the view is rendered
+ * in between. Needs JavaFX; with --renderer=canvas the CanvasLevelView is checked.
+ * Exits with 1 if the node count changed, the heap grew by more than 8 MB or a move threw.
+ */
+public class ViewGrowthCheck extends Application {
+    private static final int WARMUP = 1000;
+    private static final int MOVES = 100000;
+    private static final int BATCH = 1000;
+    private static final long HEAP_SLACK = 8 << 20;
+
+    private Level level;
+    private LevelView view;
+    private final Random random = new Random(42);
+    private int played;
+    private int nodesBefore;
+    private long heapBefore;
+
+    public void start(Stage stage) {
+        Thread.currentThread().setUncaughtExceptionHandler((thread, e) -> {
+            e.printStackTrace();
+            Out.println("FAILED: a move threw " + e);
+            System.exit(1);
+        });
+        String no = getParameters().getNamed().get("level");
+        level = new Level(no != null ? Integer.parseInt(no) : 1);
+        LevelController controller = new LevelController(level);
+        if ("canvas".equals(getParameters().getNamed().get("renderer")))
+            view = new CanvasLevelView(level, controller);
+        else
+            view = new LevelView(level, controller);
+        stage.setScene(new Scene(view));
+        stage.sizeToScene();
+        stage.show();
+        Platform.runLater(this::playBatch);
+    }
+
+    /**
+     * Plays the next batch of moves and queues the one after it, so a pulse can render the view in between.
+     */
+    private void playBatch() {
+        for (int i = 0; i < BATCH; i++) {
+            level.move(Movement.values()[random.nextInt(4)]);
+            if (level.getOutcome() != Outcome.RUNNING)
+                level.resetLevel();
+            played++;
+        }
+        if (played == WARMUP) {
+            nodesBefore = countNodes(view);
+            heapBefore = usedHeap();
+        }
+        if (played < WARMUP + MOVES) {
+            Platform.runLater(this::playBatch);
+            return;
+        }
+        int nodesAfter = countNodes(view);
+        long heapAfter = usedHeap();
+        Out.printf("%d moves on Level%d%n", MOVES, level.getLevelNumber());
+        Out.printf("nodes:     %10d before, %10d after%n", nodesBefore, nodesAfter);
+        Out.printf("used heap: %10.1f MB before, %7.1f MB after%n", heapBefore / 1e6, heapAfter / 1e6);
+        boolean flat = nodesAfter == nodesBefore && heapAfter - heapBefore <= HEAP_SLACK;
+        Out.println(flat ? "OK" : "FAILED: the view grows while playing");
+        Platform.exit();
+        if (!flat)
+            System.exit(1);
+    }
+
+    private static int countNodes(Node node) {
+        int count = 1;
+        if (node instanceof Parent)
+            for (Node child : ((Parent) node).getChildrenUnmodifiable())
+                count += countNodes(child);
+        return count;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
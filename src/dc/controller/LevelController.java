@@ -1,7 +1,13 @@
 package dc.controller;
 
-import dc.model.Level;
+import dc.model.TileBoardModel;
 import dc.view.TileBoardView;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.util.Duration;
+
+import java.nio.file.Path;
 
 /**
  * Controller for DisCaptive
@@ -9,22 +15,42 @@ import dc.view.TileBoardView;
 
 
 public class LevelController implements TileBoardController {
-    private Level model;
+    // time between two steps of a walk to a clicked tile
+    private static final Duration STEP = Duration.millis(100);
+
+    private TileBoardModel<?> model;
     private boolean active;
+    private ReplayRecorder recorder;
+    // plays the walk a click started, one step per tick
+    private final Timeline walker;
 
-    public LevelController(Level model) {
+    public LevelController(TileBoardModel<?> model) {
         this.model = model;
         active = true;
+        walker = new Timeline(new KeyFrame(STEP, e -> {
+            if (!model.walk())
+                stopWalking();
+        }));
+        walker.setCycleCount(Animation.INDEFINITE);
     }
 
     /**
      * handles the click of a specific tile
+     * The first step of the walk to it is played at once, the others one per tick.
      * @param rowNr row
      * @param colNr collum
      */
     public void handleClick(int rowNr, int colNr) {
         if (!active) return;
         model.handleClick(rowNr, colNr);
+        if (model.walk())
+            walker.playFromStart();
+        else
+            walker.stop();
+    }
+
+    private void stopWalking() {
+        walker.stop();
     }
 
     /**
@@ -48,6 +74,37 @@ public class LevelController implements TileBoardController {
 
     public void handleRestart(TileBoardView view){
         active = true;
+        if (recorder != null)
+            recorder.restart();
+    }
+
+    /**
+     * after a turn was taken back, the level can be played again. The recorder hears about the undo from the model.
+     * @param view
+     */
+    public void handleUndo(TileBoardView view) {
+        active = true;
+    }
+
+    /**
+     * Records every attempt from now on into a replay file.
+     * @param directory where the replays go
+     */
+    public void startRecording(Path directory) {
+        stopRecording();
+        recorder = new ReplayRecorder(directory, model);
+        model.registerView(recorder);
+    }
+
+    /**
+     * Stops recording and completes the replay that is written.
+     */
+    public void stopRecording() {
+        if (recorder == null)
+            return;
+        model.unregisterView(recorder);
+        recorder.close();
+        recorder = null;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package dc.controller;
+
+import dc.model.CompactLevel;
+import dc.model.ReplayWriter;
+import dc.model.TileBoardModel;
+import dc.util.Out;
+import dc.view.TileBoardView;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Records every attempt at a level into its own replay file, "Level<no>-<time>.replay" in a directory, with "-2",
+ * "-3" and so on after the time if several replays start in the same millisecond.
+ * Registered with the model like a view, it only listens to the turns that are played and taken back.
+ * A restart or a new level closes the replay and the next turn starts a new one at the start of the level.
+ * An undo closes it as well, since the turns that were taken back are already written; the next turn starts a
+ * new replay in the state the undo went back to, which is the keyframe of its first block. To know that state,
+ * the recorder keeps the movements of the attempt and plays them on a CompactLevel.
+ */
+public class ReplayRecorder implements TileBoardView {
+    private static final Movement[] MOVES = Movement.values();
+
+    private final Path directory;
+    private final TileBoardModel<?> model;
+    private final int keyframeInterval;
+    private ReplayWriter writer;
+    private boolean paused;
+    // movements of the attempt that still count
+    private byte[] movements = new byte[256];
+    private int movementCount;
+    // how many of them were played before the replay that is written now, or the next one, starts
+    private int startsAfter;
+
+    /**
+     * @param directory where the replays go
+     * @param model the model whose turns are recorded, the recorder still has to be registered with it
+     */
+    public ReplayRecorder(Path directory, TileBoardModel<?> model) {
+        this(directory, model, ReplayWriter.DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * @param directory where the replays go
+     * @param model the model whose turns are recorded, the recorder still has to be registered with it
+     * @param keyframeInterval turns between two keyframes of a replay
+     */
+    public ReplayRecorder(Path directory, TileBoardModel<?> model, int keyframeInterval) {
+        this.directory = directory;
+        this.model = model;
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    public void turnPlayed(Movement direction) {
+        if (paused)
+            return;
+        try {
+            if (writer == null) {
+                int no = model.getLevelNumber();
+                FileChannel channel = create("Level" + no + "-" + System.currentTimeMillis());
+                if (startsAfter == 0) {
+                    writer = new ReplayWriter(channel, no, keyframeInterval);
+                } else {
+                    CompactLevel start = new CompactLevel(no);
+                    for (int i = 0; i < startsAfter; i++)
+                        start.move(MOVES[movements[i]]);
+                    writer = new ReplayWriter(channel, start, keyframeInterval);
+                }
+            }
+            writer.record(direction);
+            if (movementCount == movements.length)
+                movements = Arrays.copyOf(movements, movementCount * 2);
+            movements[movementCount++] = (byte) direction.ordinal();
+        } catch (IOException | IllegalArgumentException e) {
+            Out.println("The replay can't be written: " + e.getMessage());
+            close();
+            paused = true;
+        }
+    }
+
+    /**
+     * Creates a new replay file, with a number after the name if it is taken.
+     */
+    private FileChannel create(String name) throws IOException {
+        for (int i = 1; ; i++) {
+            try {
+                return FileChannel.open(directory.resolve(name + (i == 1 ? "" : "-" + i) + ".replay"),
+                        StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+            } catch (FileAlreadyExistsException e) {
+                // started in the same millisecond as the last one
+            }
+        }
+    }
+
+    /**
+     * Closes the replay and starts the next one in the state before the movements that were taken back.
+     * @param count how many of the last movements were taken back
+     */
+    public void turnsTakenBack(int count) {
+        if (paused)
+            return;
+        close();
+        movementCount -= Math.min(count, movementCount);
+        startsAfter = movementCount;
+    }
+
+    /**
+     * Closes the replay, the next turn starts a new one. Called when the level is restarted or changed.
+     */
+    public void restart() {
+        close();
+        paused = false;
+        movementCount = 0;
+        startsAfter = 0;
+    }
+
+    /**
+     * Closes the replay, it is complete then.
+     */
+    public void close() {
+        if (writer == null)
+            return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Out.println("The replay can't be written: " + e.getMessage());
+        }
+        writer = null;
+    }
+
+    public void updateTile(int rowNr, int colNr) {
+    }
+
+    public void updateStatusLine(String text) {
+    }
+
+    public void announceLevelComplete() {
+    }
+
+    public void announceLevelLost() {
+    }
+
+    public void updateView() {
+    }
+}
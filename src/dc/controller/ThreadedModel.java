@@ -0,0 +1,317 @@
+package dc.controller;
+
+import dc.model.TileBoardModel;
+import dc.view.TileBoardView;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a model on its own simulation thread, so a turn never blocks the JavaFX application thread.
+ * Moves and clicks are put into a lock-free queue and played one after the other by the simulation thread,
+ * which is the only thread that changes the model while they run. What the model tells its views is collected
+ * on the way and handed to the views with Platform.runLater; however many turns were played meanwhile,
+ * at most one update is waiting at a time, and every changed tile is drawn once.
+ * The views read the model while the simulation thread waits, so they never see half of a turn.
+ * Once the level is won or lost, queued moves are dropped until it is restarted or a turn is taken back.
+ * Every command is stamped with the level it was queued for, so one the simulation thread has already taken from
+ * the queue when the level is restarted or changed is dropped as well.
+ * @param <T> type of the tiles
+ */
+public class ThreadedModel<T> implements TileBoardModel<T> {
+    private static final Movement[] MOVES = Movement.values();
+
+    private final TileBoardModel<T> model;
+    private final Executor ui;
+    private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean publishing = new AtomicBoolean();
+    private final Thread thread;
+    // views of the application thread, only used there
+    private final ArrayList<TileBoardView> views = new ArrayList<>();
+    // changes that haven't been shown yet, guarded by model
+    private final BitSet changedCells = new BitSet();
+    private String statusLine;
+    private boolean wholeView, complete, lost;
+    // movements of the turns played since, in order; a negative number -n means n movements were taken back
+    private int[] played = new int[16];
+    private int playedCount;
+    // true after the level is won or lost, only used by the thread that holds the model
+    private boolean over;
+    // counts the restarts and new levels, changed while the model is locked
+    private volatile int generation;
+
+    /**
+     * Plays a model on a new simulation thread and shows its changes on the JavaFX application thread.
+     * @param model the model, from now on it is only used through this object
+     */
+    public ThreadedModel(TileBoardModel<T> model) {
+        this(model, Platform::runLater);
+    }
+
+    /**
+     * Plays a model on a new simulation thread.
+     * @param model the model, from now on it is only used through this object
+     * @param ui runs the updates of the views on the thread they belong to
+     */
+    public ThreadedModel(TileBoardModel<T> model, Executor ui) {
+        this.model = model;
+        this.ui = ui;
+        model.registerView(new Collector());
+        thread = new Thread(this::simulate, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void registerView(TileBoardView view) {
+        views.add(view);
+    }
+
+    public void unregisterView(TileBoardView view) {
+        views.remove(view);
+    }
+
+    public int getWidth() {
+        synchronized (model) {
+            return model.getWidth();
+        }
+    }
+
+    public int getHeight() {
+        synchronized (model) {
+            return model.getHeight();
+        }
+    }
+
+    public int getLevelNumber() {
+        synchronized (model) {
+            return model.getLevelNumber();
+        }
+    }
+
+    public T getBottomTileAt(int rowNr, int colNr) {
+        synchronized (model) {
+            return model.getBottomTileAt(rowNr, colNr);
+        }
+    }
+
+    public T getTopTileAt(int rowNr, int colNr) {
+        synchronized (model) {
+            return model.getTopTileAt(rowNr, colNr);
+        }
+    }
+
+    /**
+     * Queues a move for the simulation thread and returns at once.
+     * @param direction direction of the player
+     */
+    public void move(Movement direction) {
+        submit(() -> {
+            if (!over)
+                model.move(direction);
+        });
+    }
+
+    /**
+     * Queues a click for the simulation thread and returns at once.
+     * The walk it starts is played through the queue as well, one step per command, so moves and clicks queued
+     * meanwhile come in between and the views are updated after every step.
+     * @param row row
+     * @param col collum
+     */
+    public void handleClick(int row, int col) {
+        submit(() -> {
+            if (!over) {
+                model.handleClick(row, col);
+                submit(this::walkStep);
+            }
+        });
+    }
+
+    /**
+     * Plays a step of the walk and queues the next one. Runs on the simulation thread.
+     */
+    private void walkStep() {
+        if (!over && model.walk())
+            submit(this::walkStep);
+    }
+
+    /**
+     * Queues taking back the last turn and returns at once.
+     * @return true, whether there was a turn to take back is only known once it is played
+     */
+    public boolean undo() {
+        submit(() -> {
+            if (model.undo())
+                over = false;
+        });
+        return true;
+    }
+
+    /**
+     * Queues playing the last turn that was taken back again and returns at once.
+     * @return true, whether there was a turn to play again is only known once it is played
+     */
+    public boolean redo() {
+        submit(model::redo);
+        return true;
+    }
+
+    /**
+     * Drops the queued moves and restarts the level right away, since the caller goes on with the restarted level.
+     */
+    public void resetLevel() {
+        commands.clear();
+        synchronized (model) {
+            generation++;
+            over = false;
+            model.resetLevel();
+        }
+        publish();
+    }
+
+    /**
+     * Drops the queued moves and starts the new level right away, since the caller asks for its size next.
+     * @param no the number of the level
+     */
+    public void startNewLevel(int no) {
+        commands.clear();
+        synchronized (model) {
+            generation++;
+            over = false;
+            model.startNewLevel(no);
+            changedCells.clear();
+            statusLine = null;
+            wholeView = complete = lost = false;
+            playedCount = 0;
+        }
+    }
+
+    /**
+     * @return true if there are moves or clicks that haven't been played yet
+     */
+    public boolean isBusy() {
+        return !commands.isEmpty() || running.get();
+    }
+
+    /**
+     * Queues a command for the level that is played now; it is dropped if the level is restarted or changed first.
+     * @param command runs while the model is locked
+     */
+    private void submit(Runnable command) {
+        int stamp = generation;
+        commands.add(() -> {
+            if (stamp == generation)
+                command.run();
+        });
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Plays the queued commands, parks while there are none.
+     */
+    private void simulate() {
+        while (true) {
+            Runnable command = commands.poll();
+            if (command == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            running.set(true);
+            synchronized (model) {
+                command.run();
+            }
+            running.set(false);
+            if (publishing.compareAndSet(false, true))
+                ui.execute(this::publish);
+        }
+    }
+
+    /**
+     * Shows everything that changed since the last time. Runs on the thread of the views.
+     */
+    private void publish() {
+        publishing.set(false);
+        synchronized (model) {
+            for (int i = 0; i < playedCount; i++)           // before a restart, they were played before it
+                for (TileBoardView view : views)
+                    if (played[i] < 0)
+                        view.turnsTakenBack(-played[i]);
+                    else
+                        view.turnPlayed(MOVES[played[i]]);
+            if (wholeView) {
+                for (TileBoardView view : views)
+                    view.updateView();
+            } else if (!changedCells.isEmpty()) {
+                int width = model.getWidth();
+                for (TileBoardView view : views)
+                    view.updateTiles(changedCells, width);
+            }
+            if (statusLine != null)
+                for (TileBoardView view : views)
+                    view.updateStatusLine(statusLine);
+            if (complete)
+                for (TileBoardView view : views)
+                    view.announceLevelComplete();
+            if (lost)
+                for (TileBoardView view : views)
+                    view.announceLevelLost();
+            changedCells.clear();
+            statusLine = null;
+            wholeView = complete = lost = false;
+            playedCount = 0;
+        }
+    }
+
+    /**
+     * Registered with the model, collects what it tells its views. Called while the model is locked.
+     */
+    private class Collector implements TileBoardView {
+        public void updateTile(int rowNr, int colNr) {
+            changedCells.set(rowNr * model.getWidth() + colNr);
+        }
+
+        public void updateTiles(BitSet cells, int width) {
+            changedCells.or(cells);
+        }
+
+        public void updateStatusLine(String text) {
+            statusLine = text;
+        }
+
+        public void announceLevelComplete() {
+            over = true;
+            complete = true;
+        }
+
+        public void announceLevelLost() {
+            over = true;
+            lost = true;
+        }
+
+        public void updateView() {
+            wholeView = true;
+            changedCells.clear();
+        }
+
+        public void turnPlayed(Movement direction) {
+            add(direction.ordinal());
+        }
+
+        public void turnsTakenBack(int movements) {
+            add(-movements);
+        }
+
+        private void add(int event) {
+            if (playedCount == played.length)
+                played = Arrays.copyOf(played, playedCount * 2);
+            played[playedCount++] = event;
+        }
+    }
+}
@@ -31,4 +31,12 @@ public interface TileBoardController {
      * @param view view it came from
      */
     void handleRestart(TileBoardView view);
+
+    /**
+     * Makes the controller usable again after a turn was taken back
+     * @param view view it came from
+     */
+    default void handleUndo(TileBoardView view) {
+        handleRestart(view);
+    }
 }
@@ -0,0 +1,813 @@
+package dc.model;
+
+import dc.controller.Movement;
+import dc.util.Out;
+import dc.util.Type;
+import dc.view.TileBoardView;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A level that keeps its map in primitive arrays instead of one Tile object per cell.
+ * The static layer holds one byte per cell for the tile a movable would stand on, the occupant layer
+ * holds which movable (player, box or guard) is on top of it. Tile objects are only created as views
+ * when getBottomTileAt or getTopTileAt is called.
+ * Follows the same rules as Movable.move, so both models play a level the same way.
+ */
+public class CompactLevel implements TileBoardModel<Tile> {
+    // static layer
+    static final byte EMPTY = 0, WALL = 1, GOAL = 2, GAP = 3, BOX_IN_GAP = 4, KEY = 5, LOCK = 6, OPEN_LOCK = 7,
+            TURN_RIGHT = 8, TURN_LEFT = 9, BLUE_OPENER = 10, RED_OPENER = 11, BLUE_FIELD = 12, RED_FIELD = 13,
+            UNKNOWN = 14;
+    // occupant layer
+    static final byte NOBODY = 0, PLAYER = 1, BOX = 2, GUARD = 3;
+    // directions, clockwise so turning is a simple addition
+    static final byte NORTH = 0, EAST = 1, SOUTH = 2, WEST = 3;
+
+    private static final Type[] DIRECTIONS = {Type.NORTH, Type.EAST, Type.SOUTH, Type.WEST};
+    // indexed by Movement.ordinal()
+    static final byte[] MOVEMENTS = {WEST, EAST, NORTH, SOUTH};
+
+    private String name;
+    private int number;
+    private int height, width;
+    byte[] cells;
+    byte[] occupant;
+    int[] occupantIndex;
+
+    int playerCell;
+    byte playerDir;
+    int keys;
+    int playerMoved;
+
+    int numberOfBoxes;
+    int[] boxCell;
+    boolean[] boxOverGoal;
+    int[] boxMoved;
+
+    int numberOfGuards;
+    int[] guardCell;
+    byte[] guardDir;
+    int[] guardMoved;
+    int[] guardScheduled;
+
+    boolean blueOpen, redOpen;
+    // number of the current turn, the moved arrays hold the turn each movable last moved in
+    int currentTurn = 1;
+    Outcome outcome;
+    private EntityStore<TileBoardView> views;
+    // cells that changed during the current turn, the views get them all at once when the turn ends
+    private final BitSet changedCells = new BitSet();
+    // the state right after loading, never changed
+    private CompactLevel start;
+
+    /**
+     * Creates a new level and loads it from its textfile.
+     * @param i The number of the level
+     */
+    public CompactLevel(int i) {
+        views = new EntityStore<>();
+        createName(i);
+        loadMap();
+    }
+
+    private CompactLevel() {
+        views = new EntityStore<>();
+    }
+
+    /**
+     * Copies the current state of the level. The copy has no views registered.
+     * @return the copy
+     */
+    public CompactLevel copy() {
+        CompactLevel copy = new CompactLevel();
+        copy.name = name;
+        copy.number = number;
+        copy.height = height;
+        copy.width = width;
+        copy.cells = cells.clone();
+        copy.occupant = occupant.clone();
+        copy.occupantIndex = occupantIndex.clone();
+        copy.playerCell = playerCell;
+        copy.playerDir = playerDir;
+        copy.keys = keys;
+        copy.playerMoved = playerMoved;
+        copy.numberOfBoxes = numberOfBoxes;
+        copy.boxCell = boxCell.clone();
+        copy.boxOverGoal = boxOverGoal.clone();
+        copy.boxMoved = boxMoved.clone();
+        copy.numberOfGuards = numberOfGuards;
+        copy.guardCell = guardCell.clone();
+        copy.guardDir = guardDir.clone();
+        copy.guardMoved = guardMoved.clone();
+        copy.guardScheduled = guardScheduled.clone();
+        copy.currentTurn = currentTurn;
+        copy.blueOpen = blueOpen;
+        copy.redOpen = redOpen;
+        copy.outcome = outcome;
+        copy.start = start;
+        return copy;
+    }
+
+    /**
+     * Copies the state of another level of the same map into this one, without making new arrays.
+     * @param from a level of the same map
+     */
+    private void restore(CompactLevel from) {
+        System.arraycopy(from.cells, 0, cells, 0, cells.length);
+        System.arraycopy(from.occupant, 0, occupant, 0, occupant.length);
+        System.arraycopy(from.occupantIndex, 0, occupantIndex, 0, occupantIndex.length);
+        System.arraycopy(from.boxCell, 0, boxCell, 0, numberOfBoxes);
+        System.arraycopy(from.boxOverGoal, 0, boxOverGoal, 0, numberOfBoxes);
+        System.arraycopy(from.boxMoved, 0, boxMoved, 0, numberOfBoxes);
+        System.arraycopy(from.guardCell, 0, guardCell, 0, numberOfGuards);
+        System.arraycopy(from.guardDir, 0, guardDir, 0, numberOfGuards);
+        System.arraycopy(from.guardMoved, 0, guardMoved, 0, numberOfGuards);
+        System.arraycopy(from.guardScheduled, 0, guardScheduled, 0, numberOfGuards);
+        playerCell = from.playerCell;
+        playerDir = from.playerDir;
+        keys = from.keys;
+        playerMoved = from.playerMoved;
+        blueOpen = from.blueOpen;
+        redOpen = from.redOpen;
+        outcome = from.outcome;
+        currentTurn = from.currentTurn;
+        changedCells.clear();
+    }
+
+    /**
+     * Handles mouse click
+     * Checks the position of the click and tells the player to move into that direction.
+     * @param row row of click
+     * @param col collum of click
+     */
+    public void handleClick(int row, int col) {
+        int playerRow = playerCell / width;
+        int playerCol = playerCell % width;
+        if (row == playerRow) {
+            if (col > playerCol)
+                move(Movement.RIGHT);
+            else if (col != playerCol)
+                move(Movement.LEFT);
+        } else if (col == playerCol) {
+            if (row > playerRow)
+                move(Movement.DOWN);
+            else
+                move(Movement.UP);
+        }
+    }
+
+    /**
+     * Moves the player and all guards, then resets the moved flags of all movables.
+     * @param direction direction
+     */
+    public void move(Movement direction) {
+        updateStatusLine("");
+        turn(MOVEMENTS[direction.ordinal()]);
+        for (TileBoardView view : views)
+            view.turnPlayed(direction);
+    }
+
+    /**
+     * Plays one turn: the player moves one step, then every guard moves once, like GuardScheduler.
+     * Views are only told about changes if there are any registered, once at the end of the turn.
+     * @param d direction of the player
+     */
+    void turn(byte d) {
+        movePlayer(d);
+        for (int g = 0; g < numberOfGuards; g++)
+            runGuard(g);
+        fireTileUpdates();
+        resetMovedThisTurn();
+    }
+
+    /**
+     * Puts the level back into the state it was loaded in by copying the arrays back, then tells all views to
+     * update themselves.
+     */
+    public void resetLevel() {
+        restore(start);
+        for (TileBoardView view : views)
+            view.updateView();
+    }
+
+    /**
+     * Starts a new level.
+     * @param no the number of the level
+     */
+    public void startNewLevel(int no) {
+        createName(no);
+        loadMap();
+    }
+
+    /**
+     * Returns a view of the tile on bottom
+     * @param rowNr row
+     * @param colNr collum
+     * @return bottom tile
+     */
+    public Tile getBottomTileAt(int rowNr, int colNr) {
+        int x = rowNr, y = colNr;
+        switch (cells[rowNr * width + colNr]) {
+            case EMPTY:
+                return new EmptyPassage(x, y);
+            case WALL:
+                return new Wall(x, y);
+            case GOAL:
+                return new PlayerGoal(x, y);
+            case GAP:
+                return new Gap(x, y);
+            case BOX_IN_GAP:
+                return new BoxInGap(x, y);
+            case KEY:
+                return new Key(x, y);
+            case LOCK:
+                return new Lock(x, y);
+            case OPEN_LOCK:
+                return new OpenLock(x, y);
+            case TURN_RIGHT:
+                return new SwitchDirection(x, y, Type.RIGHT);
+            case TURN_LEFT:
+                return new SwitchDirection(x, y, Type.LEFT);
+            case BLUE_OPENER:
+                return new ForceFieldOpener(x, y, Type.BLUE);
+            case RED_OPENER:
+                return new ForceFieldOpener(x, y, Type.RED);
+            case BLUE_FIELD:
+                return makeForceField(x, y, Type.BLUE, Type.BLUEOPEN, blueOpen);
+            case RED_FIELD:
+                return makeForceField(x, y, Type.RED, Type.REDOPNEN, redOpen);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns a view of the movable on top
+     * @param rowNr row
+     * @param colNr collum
+     * @return movable or null
+     */
+    public Tile getTopTileAt(int rowNr, int colNr) {
+        int cell = rowNr * width + colNr;
+        int i = occupantIndex[cell];
+        switch (occupant[cell]) {
+            case PLAYER:
+                Player player = new Player(rowNr, colNr, null);
+                player.setType(playerDir < 0 ? null : DIRECTIONS[playerDir]);
+                player.setKeys(keys);
+                return player;
+            case BOX:
+                return boxOverGoal[i] ? new BoxOverGoal(rowNr, colNr, null) : new Box(rowNr, colNr, null);
+            case GUARD:
+                Guard guard = new Guard(rowNr, colNr, 'N', null);
+                guard.setType(DIRECTIONS[guardDir[i]]);
+                return guard;
+            default:
+                return null;
+        }
+    }
+
+    public void registerView(TileBoardView view) {
+        views.add(view);
+    }
+
+    public void unregisterView(TileBoardView view) {
+        views.remove(view);
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getLevelNumber() {
+        return number;
+    }
+
+    /**
+     * Returns whether the level has been won or lost yet.
+     * @return the first outcome since the level was loaded
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Moves the player one step, the same way Movable.move(Level, Movement) does.
+     * @param d direction
+     */
+    private void movePlayer(byte d) {
+        playerDir = d;
+        moveInto(PLAYER, 0, neighbour(playerCell, d), d);
+    }
+
+    /**
+     * Tries to move a movable one step into a direction, like Movable.move(Level, Type).
+     * Guards always go through moveGuard, which may turn them on a SwitchDirection first.
+     */
+    private void move(byte kind, int i, byte d) {
+        if (kind == GUARD)
+            moveGuard(i);
+        else
+            moveInto(kind, i, neighbour(cellOf(kind, i), d), d);
+    }
+
+    /**
+     * Moves a guard unless it already had its move this turn, like GuardScheduler.run.
+     */
+    private void runGuard(int g) {
+        if (guardScheduled[g] == currentTurn)
+            return;
+        guardScheduled[g] = currentTurn;
+        moveGuard(g);
+    }
+
+    /**
+     * Turns the guard if it stands on a SwitchDirection and moves it, like Guard.move.
+     */
+    private void moveGuard(int g) {
+        byte under = cells[guardCell[g]];
+        if (under == TURN_RIGHT)
+            guardDir[g] = (byte) ((guardDir[g] + 1) & 3);
+        else if (under == TURN_LEFT)
+            guardDir[g] = (byte) ((guardDir[g] + 3) & 3);
+        moveInto(GUARD, g, neighbour(guardCell[g], guardDir[g]), guardDir[g]);
+    }
+
+    /**
+     * Tries to move a movable onto a field. Mirrors Movable.move(Level, Movable, Tile, Type) branch by branch.
+     * @param kind PLAYER, BOX or GUARD
+     * @param i index of the box or guard
+     * @param field the cell it wants to move to, -1 if that is outside the map
+     * @param d direction
+     */
+    private void moveInto(byte kind, int i, int field, byte d) {
+        if (isMoved(kind, i))
+            return;
+        int start = cellOf(kind, i);
+        byte ahead = field < 0 ? NOBODY : occupant[field];
+        byte tile = field < 0 ? UNKNOWN : cells[field];
+
+        if (ahead == NOBODY && isPassage(tile)) {                          // Passage ahead
+            step(kind, i, start, field);
+            if (kind == GUARD) {
+                screen(i);
+                return;
+            }
+            if (kind == PLAYER) {
+                if (tile == GOAL) {
+                    handleLevelComplete();
+                    return;
+                }
+                if (tile == BLUE_OPENER || tile == RED_OPENER) {
+                    openForceFields(tile == BLUE_OPENER ? BLUE_FIELD : RED_FIELD);
+                    cells[field] = EMPTY;
+                    return;
+                }
+                if (tile == KEY) {
+                    keys++;
+                    cells[field] = EMPTY;
+                }
+            }
+            return;
+        }
+
+        if (ahead == NOBODY && tile == LOCK) {
+            if (kind == PLAYER) {
+                if (keys > 0) {
+                    cells[field] = OPEN_LOCK;
+                    keys--;
+                    move(PLAYER, 0, playerDir);
+                } else {
+                    updateStatusLine("You don't have enough keys");
+                }
+            } else if (kind == GUARD) {
+                turn180(i);
+                moveGuard(i);
+            } else {
+                boxMoved[i] = currentTurn;
+            }
+            return;
+        }
+
+        if (ahead == NOBODY && (tile == BLUE_FIELD || tile == RED_FIELD)) {
+            if (tile == BLUE_FIELD ? blueOpen : redOpen) {
+                step(kind, i, start, field);
+            } else if (kind == PLAYER) {
+                updateStatusLine("You cant move through yet.");
+            } else if (kind == BOX) {
+                boxMoved[i] = currentTurn;
+            } else {
+                turn180(i);
+                moveGuard(i);
+            }
+            return;
+        }
+
+        if (ahead == NOBODY && tile == WALL) {
+            if (kind == PLAYER) {
+                updateStatusLine("You hit a Wall!");
+                fireTileUpdate(start);
+            } else if (kind == GUARD) {
+                turn180(i);
+                moveGuard(i);
+            } else {
+                boxMoved[i] = currentTurn;
+            }
+            return;
+        }
+
+        if (ahead == BOX) {
+            int b = occupantIndex[field];
+            if (kind == GUARD) {                                            // Guard pushes a box
+                if (boxMoved[b] == currentTurn) {
+                    turn180(i);
+                } else {
+                    move(BOX, b, guardDir[i]);
+                    moveGuard(i);
+                    if (guardMoved[i] != currentTurn)
+                        turn180(i);
+                }
+            } else if (kind == PLAYER) {                                    // Player pushes a box
+                if (boxMoved[b] == currentTurn) {
+                    updateStatusLine("You can't move this box");
+                } else {
+                    move(BOX, b, playerDir);
+                    move(PLAYER, 0, playerDir);
+                }
+            } else {                                                        // Box pushes a box
+                updateStatusLine("You cant move through yet.");
+                boxMoved[i] = currentTurn;
+            }
+            return;
+        }
+
+        if (ahead == GUARD) {
+            int g = occupantIndex[field];
+            if (kind == GUARD) {                                            // Guard hits guard
+                if (guardScheduled[g] != currentTurn) {
+                    runGuard(g);
+                    moveInto(GUARD, i, neighbour(guardCell[i], guardDir[i]), guardDir[i]);
+                } else {
+                    turn180(i);
+                }
+            } else if (kind == PLAYER) {
+                updateStatusLine("You got lucky he didn't see you");
+            } else {
+                boxMoved[i] = currentTurn;
+            }
+            return;
+        }
+
+        if (ahead == NOBODY && tile == GAP) {
+            if (kind == PLAYER) {                                           // Player falls into the gap
+                occupant[start] = NOBODY;
+                occupant[field] = PLAYER;
+                playerCell = field;
+                fireTileUpdate(start);
+                fireTileUpdate(field);
+                handleLevelLost();
+            } else if (kind == GUARD) {
+                turn180(i);
+            } else {                                                        // Box fills the gap
+                cells[field] = BOX_IN_GAP;
+                occupant[start] = NOBODY;
+                boxCell[i] = -1;
+                boxMoved[i] = currentTurn;
+                fireTileUpdate(start);
+                fireTileUpdate(field);
+            }
+            return;
+        }
+
+        if (ahead == PLAYER && kind == GUARD) {                             // Guard runs into player
+            handleLevelLost();
+            return;
+        }
+        if (kind == BOX)
+            boxMoved[i] = currentTurn;
+    }
+
+    /**
+     * Moves a movable from start to field and marks it as moved.
+     */
+    private void step(byte kind, int i, int start, int field) {
+        occupant[start] = NOBODY;
+        occupant[field] = kind;
+        occupantIndex[field] = i;
+        switch (kind) {
+            case PLAYER:
+                playerCell = field;
+                playerMoved = currentTurn;
+                break;
+            case BOX:
+                boxCell[i] = field;
+                boxMoved[i] = currentTurn;
+                break;
+            default:
+                guardCell[i] = field;
+                guardMoved[i] = currentTurn;
+        }
+        fireTileUpdate(start);
+        fireTileUpdate(field);
+    }
+
+    /**
+     * Turns a guard by 180° and screens for the player, like Guard.turn180.
+     */
+    private void turn180(int g) {
+        guardDir[g] = (byte) ((guardDir[g] + 2) & 3);
+        fireTileUpdate(guardCell[g]);
+        screen(g);
+    }
+
+    /**
+     * Looks along the direction of a guard, like Guard.screen.
+     * Passages and gaps can be seen through, everything else blocks the view.
+     */
+    private void screen(int g) {
+        int cell = neighbour(guardCell[g], guardDir[g]);
+        while (cell >= 0) {
+            byte on = occupant[cell];
+            if (on == PLAYER) {
+                handleLevelLost();
+                return;
+            }
+            if (on != NOBODY)
+                return;
+            byte tile = cells[cell];
+            if (!isPassage(tile) && tile != GAP)
+                return;
+            cell = neighbour(cell, guardDir[g]);
+        }
+    }
+
+    /**
+     * Opens all forcefields of one color and tells the views to update them.
+     * @param color BLUE_FIELD or RED_FIELD
+     */
+    private void openForceFields(byte color) {
+        if (color == BLUE_FIELD)
+            blueOpen = true;
+        else
+            redOpen = true;
+        if (views.isEmpty())
+            return;
+        for (int cell = 0; cell < cells.length; cell++)
+            if (cells[cell] == color)
+                fireTileUpdate(cell);
+    }
+
+    /**
+     * Ends the turn. Everything that moved in it counts as not moved any more.
+     */
+    void resetMovedThisTurn() {
+        currentTurn++;
+    }
+
+    private boolean isMoved(byte kind, int i) {
+        switch (kind) {
+            case PLAYER:
+                return playerMoved == currentTurn;
+            case BOX:
+                return boxMoved[i] == currentTurn;
+            default:
+                return guardMoved[i] == currentTurn;
+        }
+    }
+
+    private int cellOf(byte kind, int i) {
+        switch (kind) {
+            case PLAYER:
+                return playerCell;
+            case BOX:
+                return boxCell[i];
+            default:
+                return guardCell[i];
+        }
+    }
+
+    /**
+     * Returns the neighbouring cell in a direction.
+     * @return the cell or -1 if it is outside the map
+     */
+    int neighbour(int cell, byte d) {
+        int col = cell % width;
+        switch (d) {
+            case NORTH:
+                return cell >= width ? cell - width : -1;
+            case SOUTH:
+                return cell + width < cells.length ? cell + width : -1;
+            case WEST:
+                return col > 0 ? cell - 1 : -1;
+            default:
+                return col < width - 1 ? cell + 1 : -1;
+        }
+    }
+
+    /**
+     * Everything a movable can step on, same as the subclasses of Passage.
+     */
+    static boolean isPassage(byte tile) {
+        switch (tile) {
+            case EMPTY:
+            case GOAL:
+            case BOX_IN_GAP:
+            case KEY:
+            case OPEN_LOCK:
+            case TURN_RIGHT:
+            case TURN_LEFT:
+            case BLUE_OPENER:
+            case RED_OPENER:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static ForceField makeForceField(int x, int y, Type color, Type open, boolean isOpen) {
+        ForceField field = new ForceField(x, y, isOpen ? open : color, true);
+        field.setActive(!isOpen);
+        return field;
+    }
+
+    protected void updateStatusLine(String text) {
+        if (views.isEmpty())
+            return;
+        for (TileBoardView view : views)
+            view.updateStatusLine(text);
+    }
+
+    protected void fireTileUpdate(int cell) {
+        if (!views.isEmpty())
+            changedCells.set(cell);
+    }
+
+    protected void fireTileUpdates() {
+        if (changedCells.isEmpty())
+            return;
+        for (TileBoardView view : views)
+            view.updateTiles(changedCells, width);
+        changedCells.clear();
+    }
+
+    protected void handleLevelComplete() {
+        if (outcome == Outcome.RUNNING)
+            outcome = Outcome.WON;
+        if (views.isEmpty())
+            return;
+        fireTileUpdates();
+        for (TileBoardView view : views)
+            view.announceLevelComplete();
+    }
+
+    protected void handleLevelLost() {
+        if (outcome == Outcome.RUNNING)
+            outcome = Outcome.LOST;
+        if (views.isEmpty())
+            return;
+        fireTileUpdates();
+        for (TileBoardView view : views)
+            view.announceLevelLost();
+    }
+
+    /**
+     * Fills the static and the occupant layer from the template of the level in the LevelCache,
+     * and keeps a copy of that state for resetLevel.
+     */
+    private void loadMap() {
+        LevelTemplate template = LevelCache.shared().get(name);
+        outcome = Outcome.RUNNING;
+        if (template == null) {
+            Out.println("Map '" + name + "' does not exist.");
+            height = 0;
+            width = 0;
+        } else {
+            height = template.height;
+            width = template.width;
+        }
+        if (height < 4 || width < 4) {
+            Out.println("Map '" + name + "' is not a valid map.");
+            height = 0;
+            width = 0;
+        }
+        int size = height * width;
+        cells = new byte[size];
+        occupant = new byte[size];
+        occupantIndex = new int[size];
+        boxCell = new int[size];
+        boxOverGoal = new boolean[size];
+        guardCell = new int[size];
+        guardDir = new byte[size];
+        numberOfBoxes = 0;
+        numberOfGuards = 0;
+        playerCell = 0;
+        keys = 0;
+        playerDir = -1;
+        blueOpen = false;
+        redOpen = false;
+
+        for (int p = 0; p < height; p++) {
+            for (int i = 0; i < width; i++) {
+                int cell = p * width + i;
+                char c = template.glyphAt(cell);
+                switch (c) {
+                    case ' ':
+                        break;
+                    case '#':
+                        cells[cell] = WALL;
+                        break;
+                    case '@':
+                        playerCell = cell;
+                        occupant[cell] = PLAYER;
+                        break;
+                    case '.':
+                        cells[cell] = GOAL;
+                        break;
+                    case '*':
+                        cells[cell] = GOAL;
+                        boxOverGoal[numberOfBoxes] = true;
+                        addBox(cell);
+                        break;
+                    case '$':
+                        addBox(cell);
+                        break;
+                    case '!':
+                        cells[cell] = GAP;
+                        break;
+                    case 'N':
+                        addGuard(cell, NORTH);
+                        break;
+                    case 'O':
+                        addGuard(cell, EAST);
+                        break;
+                    case 'S':
+                        addGuard(cell, SOUTH);
+                        break;
+                    case 'W':
+                        addGuard(cell, WEST);
+                        break;
+                    case 'R':
+                        cells[cell] = TURN_RIGHT;
+                        break;
+                    case 'L':
+                        cells[cell] = TURN_LEFT;
+                        break;
+                    case 'X':
+                        cells[cell] = BLUE_FIELD;
+                        break;
+                    case 'Y':
+                        cells[cell] = RED_FIELD;
+                        break;
+                    case 'x':
+                        cells[cell] = BLUE_OPENER;
+                        break;
+                    case 'y':
+                        cells[cell] = RED_OPENER;
+                        break;
+                    case 'z':
+                        cells[cell] = KEY;
+                        break;
+                    case 'Z':
+                        cells[cell] = LOCK;
+                        break;
+                    default:
+                        cells[cell] = UNKNOWN;
+                }
+            }
+        }
+        boxCell = Arrays.copyOf(boxCell, numberOfBoxes);
+        boxOverGoal = Arrays.copyOf(boxOverGoal, numberOfBoxes);
+        guardCell = Arrays.copyOf(guardCell, numberOfGuards);
+        guardDir = Arrays.copyOf(guardDir, numberOfGuards);
+        boxMoved = new int[numberOfBoxes];
+        guardMoved = new int[numberOfGuards];
+        guardScheduled = new int[numberOfGuards];
+        playerMoved = 0;
+        currentTurn = 1;
+        start = copy();
+    }
+
+    private void addBox(int cell) {
+        occupant[cell] = BOX;
+        occupantIndex[cell] = numberOfBoxes;
+        boxCell[numberOfBoxes++] = cell;
+    }
+
+    private void addGuard(int cell, byte d) {
+        occupant[cell] = GUARD;
+        occupantIndex[cell] = numberOfGuards;
+        guardCell[numberOfGuards] = cell;
+        guardDir[numberOfGuards++] = d;
+    }
+
+    private void createName(int i) {
+        number = i;
+        name = "Level" + i + ".txt";
+    }
+}
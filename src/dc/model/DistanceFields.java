@@ -0,0 +1,154 @@
+package dc.model;
+
+import dc.controller.Movement;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Finds the way for the player to a cell of a level.
+ * For every target a distance field is searched breadth first from the target over the cells the player can walk on,
+ * then a route only has to follow the distances downhill. The fields of the targets that were asked for last are
+ * kept; when a box moves, a gap is filled, a lock is opened or forcefields open, every kept field is repaired
+ * around the changed cell instead of being searched again.
+ * The player can walk on everything but walls, gaps, closed forcefields, boxes and, without a key, locks.
+ * Guards are ignored, they move every turn. What can be walked on is read from the map when the first field is
+ * needed and from then on only for the cells that change.
+ */
+final class DistanceFields {
+    static final int UNREACHABLE = DynamicDistanceField.UNREACHABLE;
+    private static final int MAX_FIELDS = 16;
+    // what the player can walk on
+    private static final byte BLOCKED = 0, FREE = 1, NEEDS_KEY = 2;
+
+    private final Level level;
+    private final int height, width;
+    // fields by target cell * 2 + 1 if locks can be opened, least recently used first
+    private final LinkedHashMap<Integer, DynamicDistanceField> fields = new LinkedHashMap<>(MAX_FIELDS * 2, 0.75f, true);
+    // what can be walked on without and with a key, null until a field is needed
+    private boolean[] free, keyed;
+
+    DistanceFields(Level level) {
+        this.level = level;
+        height = level.getHeight();
+        width = level.getWidth();
+    }
+
+    /**
+     * Forgets all fields, for when the level starts again.
+     */
+    void invalidate() {
+        fields.clear();
+        free = null;
+        keyed = null;
+    }
+
+    /**
+     * Reads a cell of the map again and repairs the fields if it can be walked on now and couldn't before,
+     * or the other way round.
+     * @param rowNr row
+     * @param colNr collum
+     */
+    void cellChanged(int rowNr, int colNr) {
+        if (free == null)
+            return;
+        int cell = rowNr * width + colNr;
+        byte ground = groundAt(rowNr, colNr);
+        boolean freeChanged = free[cell] != (ground == FREE);
+        boolean keyedChanged = keyed[cell] != (ground != BLOCKED);
+        free[cell] = ground == FREE;
+        keyed[cell] = ground != BLOCKED;
+        if (freeChanged || keyedChanged)
+            for (Map.Entry<Integer, DynamicDistanceField> entry : fields.entrySet())
+                if ((entry.getKey() & 1) == 0 ? freeChanged : keyedChanged)
+                    entry.getValue().cellChanged(cell);
+    }
+
+    /**
+     * Returns the shortest route from one cell to another.
+     * @param from row * width + col of the start
+     * @param to row * width + col of the target
+     * @param withKey true if locks can be walked through
+     * @return the movements, empty if both cells are the same, null if there is no way
+     */
+    Movement[] route(int from, int to, boolean withKey) {
+        int[] distance = field(to, withKey).distances();
+        if (distance[from] == UNREACHABLE)
+            return null;
+        Movement[] route = new Movement[distance[from]];
+        int cell = from;
+        for (int i = 0; i < route.length; i++) {
+            int next;
+            if (cell >= width && distance[next = cell - width] < distance[cell])
+                route[i] = Movement.UP;
+            else if (cell + width < distance.length && distance[next = cell + width] < distance[cell])
+                route[i] = Movement.DOWN;
+            else if (cell % width > 0 && distance[next = cell - 1] < distance[cell])
+                route[i] = Movement.LEFT;
+            else {
+                next = cell + 1;
+                route[i] = Movement.RIGHT;
+            }
+            cell = next;
+        }
+        return route;
+    }
+
+    /**
+     * Returns the distances of all cells to a target, searching them if they aren't kept.
+     * @param to row * width + col of the target
+     * @param withKey true if locks can be walked through
+     * @return the field
+     */
+    DynamicDistanceField field(int to, boolean withKey) {
+        if (free == null)
+            readGround();
+        Integer key = to * 2 + (withKey ? 1 : 0);
+        DynamicDistanceField field = fields.get(key);
+        if (field == null) {
+            field = new DynamicDistanceField(withKey ? keyed : free, width, to);
+            fields.put(key, field);
+            if (fields.size() > MAX_FIELDS) {
+                Iterator<Map.Entry<Integer, DynamicDistanceField>> eldest = fields.entrySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return field;
+    }
+
+    private void readGround() {
+        free = new boolean[height * width];
+        keyed = new boolean[height * width];
+        for (int p = 0; p < height; p++)
+            for (int i = 0; i < width; i++) {
+                byte ground = groundAt(p, i);
+                free[p * width + i] = ground == FREE;
+                keyed[p * width + i] = ground != BLOCKED;
+            }
+    }
+
+    /**
+     * @return BLOCKED, FREE or NEEDS_KEY
+     */
+    private byte groundAt(int rowNr, int colNr) {
+        Tile top = level.getTopTileAt(rowNr, colNr);
+        if (top instanceof Box)
+            return BLOCKED;
+        Tile tile = level.getBottomTileAt(rowNr, colNr);
+        if (tile == null)
+            return BLOCKED;
+        switch (tile.getKind()) {
+            case WALL:
+            case GAP:
+                return BLOCKED;
+            case FORCE_FIELD:
+                return ((ForceField) tile).isActive() ? BLOCKED : FREE;
+            case LOCK:
+                return NEEDS_KEY;
+            default:
+                return FREE;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package dc.model;
+
+import java.util.Arrays;
+
+/**
+ * The distances of all cells of a grid to one target cell, kept up to date while cells open and close.
+ * Whoever owns the grid changes a cell and then calls cellChanged; only the cells whose distance really changes
+ * are visited again, instead of searching the whole grid.
+ * When a cell opens, the shorter distances spread out from it. When a cell closes, the cells that can't get
+ * to the target one step shorter any more are found level by level, then they get their distances from the
+ * cells around them that were not affected.
+ */
+public final class DynamicDistanceField {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final boolean[] open;
+    private final int width;
+    private final int target;
+    private final int[] distance;
+    // scratch space of the repairs
+    private final int[] queue;
+    private final boolean[] marked;
+    private long[] sources = new long[16];
+    private int visited;
+
+    /**
+     * Searches the distances of a grid once.
+     * @param open true for every cell that can be walked on, row * width + col; owned by the caller
+     * @param width width of the grid
+     * @param target the cell the distances lead to
+     */
+    public DynamicDistanceField(boolean[] open, int width, int target) {
+        this.open = open;
+        this.width = width;
+        this.target = target;
+        distance = new int[open.length];
+        queue = new int[open.length];
+        marked = new boolean[open.length];
+        recompute();
+    }
+
+    /**
+     * @param cell row * width + col
+     * @return number of steps from the cell to the target, UNREACHABLE if there is no way
+     */
+    public int distanceAt(int cell) {
+        return distance[cell];
+    }
+
+    /**
+     * @return how many cells the last change or search visited
+     */
+    public int getVisited() {
+        return visited;
+    }
+
+    int[] distances() {
+        return distance;
+    }
+
+    /**
+     * Searches all distances again, breadth first from the target.
+     */
+    public void recompute() {
+        Arrays.fill(distance, UNREACHABLE);
+        visited = 0;
+        if (!open[target])
+            return;
+        distance[target] = 0;
+        queue[0] = target;
+        spread(1);
+    }
+
+    /**
+     * Repairs the distances after a cell of the grid has been opened or closed.
+     * @param cell row * width + col of the cell that changed
+     */
+    public void cellChanged(int cell) {
+        visited = 0;
+        if (open[cell])
+            opened(cell);
+        else
+            closed(cell);
+    }
+
+    private void opened(int cell) {
+        if (distance[cell] != UNREACHABLE)
+            return;
+        int best = cell == target ? 0 : nearest(cell);
+        if (best == UNREACHABLE)
+            return;
+        distance[cell] = best;
+        queue[0] = cell;
+        spread(1);
+    }
+
+    private void closed(int cell) {
+        if (distance[cell] == UNREACHABLE)
+            return;
+        if (cell == target) {
+            Arrays.fill(distance, UNREACHABLE);
+            visited = distance.length;
+            return;
+        }
+        // find the cells that lost their way: a cell keeps it if a neighbour one step nearer still has one
+        int level = distance[cell];
+        distance[cell] = UNREACHABLE;
+        int head = 0, tail = 0, lost = 0;
+        tail = markNext(cell, level, tail);
+        while (head < tail) {
+            int u = queue[head++];
+            marked[u] = false;                                  // all cells that could queue it again came before
+            if (supported(u))
+                continue;
+            int d = distance[u];
+            distance[u] = UNREACHABLE;
+            queue[lost++] = u;                                  // lost cells are kept at the front, in order
+            tail = markNext(u, d, tail);
+        }
+        visited = tail;
+
+        // give every lost cell the distance it gets from its unaffected neighbours, nearest ones first
+        int count = 0;
+        if (sources.length < lost)
+            sources = new long[Math.max(lost, sources.length * 2)];
+        for (int i = 0; i < lost; i++) {
+            int u = queue[i];
+            int d = nearest(u);
+            if (d != UNREACHABLE) {
+                distance[u] = d;
+                sources[count++] = (long) d << 32 | u;
+            }
+        }
+        Arrays.sort(sources, 0, count);
+        // merge the sorted sources with the cells they reach, both in order of distance
+        head = 0;
+        tail = 0;
+        int next = 0;
+        while (next < count || head < tail) {
+            int u;
+            if (head == tail || next < count && (int) (sources[next] >>> 32) <= distance[queue[head]]) {
+                u = (int) sources[next++];
+                if ((int) (sources[next - 1] >>> 32) > distance[u])
+                    continue;                                   // reached on a shorter way meanwhile
+            } else {
+                u = queue[head++];
+            }
+            tail = relax(u, tail);
+        }
+        visited += count;
+    }
+
+    /**
+     * Spreads shorter distances breadth first from the cells at the front of the queue.
+     */
+    private void spread(int tail) {
+        int head = 0;
+        while (head < tail)
+            tail = relax(queue[head++], tail);
+        visited += tail;
+    }
+
+    private int relax(int u, int tail) {
+        int d = distance[u] + 1;
+        int col = u % width;
+        if (u >= width)
+            tail = lower(u - width, d, tail);
+        if (u + width < open.length)
+            tail = lower(u + width, d, tail);
+        if (col > 0)
+            tail = lower(u - 1, d, tail);
+        if (col < width - 1)
+            tail = lower(u + 1, d, tail);
+        return tail;
+    }
+
+    private int lower(int v, int d, int tail) {
+        if (open[v] && distance[v] > d) {
+            distance[v] = d;
+            queue[tail++] = v;
+        }
+        return tail;
+    }
+
+    /**
+     * Queues the neighbours that were one step farther than a cell that lost its way.
+     */
+    private int markNext(int u, int level, int tail) {
+        int col = u % width;
+        if (u >= width)
+            tail = mark(u - width, level + 1, tail);
+        if (u + width < open.length)
+            tail = mark(u + width, level + 1, tail);
+        if (col > 0)
+            tail = mark(u - 1, level + 1, tail);
+        if (col < width - 1)
+            tail = mark(u + 1, level + 1, tail);
+        return tail;
+    }
+
+    private int mark(int v, int level, int tail) {
+        if (distance[v] == level && !marked[v]) {
+            marked[v] = true;
+            queue[tail++] = v;
+        }
+        return tail;
+    }
+
+    /**
+     * @return true if an open neighbour is one step nearer to the target
+     */
+    private boolean supported(int u) {
+        int d = distance[u] - 1;
+        int col = u % width;
+        return u >= width && open[u - width] && distance[u - width] == d
+                || u + width < open.length && open[u + width] && distance[u + width] == d
+                || col > 0 && open[u - 1] && distance[u - 1] == d
+                || col < width - 1 && open[u + 1] && distance[u + 1] == d;
+    }
+
+    /**
+     * @return one more than the smallest distance of the open neighbours, UNREACHABLE if none has one
+     */
+    private int nearest(int u) {
+        int best = UNREACHABLE;
+        int col = u % width;
+        if (u >= width && open[u - width])
+            best = Math.min(best, distance[u - width]);
+        if (u + width < open.length && open[u + width])
+            best = Math.min(best, distance[u + width]);
+        if (col > 0 && open[u - 1])
+            best = Math.min(best, distance[u - 1]);
+        if (col < width - 1 && open[u + 1])
+            best = Math.min(best, distance[u + 1]);
+        return best == UNREACHABLE ? UNREACHABLE : best + 1;
+    }
+}
@@ -0,0 +1,115 @@
+package dc.model;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Holds the guards, boxes and forcefields of a level and the views of a model in one array.
+ * Entities are visited by index, in the order they were added, without following any pointers.
+ * Removing an entity moves the last one into its place, so the order is only kept as long as nothing is removed.
+ * @param <T> type of the entities
+ */
+public final class EntityStore<T> implements Iterable<T> {
+    private Object[] items;
+    private int size;
+
+    public EntityStore() {
+        this(8);
+    }
+
+    /**
+     * Creates an empty store.
+     * @param capacity how many entities fit in before the array has to grow
+     */
+    public EntityStore(int capacity) {
+        items = new Object[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Adds an entity at the end.
+     * @param item the entity
+     */
+    public void add(T item) {
+        if (size == items.length) {
+            Object[] grown = new Object[size * 2];
+            System.arraycopy(items, 0, grown, 0, size);
+            items = grown;
+        }
+        items[size++] = item;
+    }
+
+    /**
+     * Returns the entity at an index.
+     * @param index from 0 to size() - 1
+     * @return the entity
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        return (T) items[index];
+    }
+
+    /**
+     * Removes an entity by putting the last one in its place.
+     * @param item the entity
+     * @return false if it wasn't in the store
+     */
+    public boolean remove(T item) {
+        for (int i = 0; i < size; i++)
+            if (items[i] == item) {
+                removeAt(i);
+                return true;
+            }
+        return false;
+    }
+
+    /**
+     * Removes the entity at an index by putting the last one in its place.
+     * @param index from 0 to size() - 1
+     */
+    public void removeAt(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        items[index] = items[--size];
+        items[size] = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entities, the array keeps its length.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            items[i] = null;
+        size = 0;
+    }
+
+    /**
+     * Visits the entities by index. An entity that is removed while iterating may make the iterator skip
+     * the one that was moved into its place, so loops that remove should count down with get instead.
+     */
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int next;
+
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (next >= size)
+                    throw new NoSuchElementException();
+                return (T) items[next++];
+            }
+        };
+    }
+}
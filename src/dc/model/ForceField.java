@@ -14,6 +14,19 @@ class ForceField extends Tile {
         type = color;
     }
 
+    public TileKind getKind() {
+        return TileKind.FORCE_FIELD;
+    }
+
+
+    /**
+     * Closes the forcefield again, like at the start of the level.
+     * @param color the color it has when closed
+     */
+    void close(Type color) {
+        active = true;
+        type = color;
+    }
 
     public boolean isActive() {
         return active;
@@ -7,4 +7,8 @@ class Gap extends Tile {
     Gap(int x, int y) {
         super(x, y);
     }
+
+    public TileKind getKind() {
+        return TileKind.GAP;
+    }
 }
\ No newline at end of file
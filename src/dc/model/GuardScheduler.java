@@ -0,0 +1,47 @@
+package dc.model;
+
+/**
+ * Moves every guard exactly once per turn.
+ * Guards are moved in the order of the level, but a guard that runs into a guard that hasn't moved yet
+ * lets that one move first and then tries again. If the guard in front is still there afterwards,
+ * or the guards block each other in a circle, the guard turns 180° instead of moving.
+ * So a turn costs one move per guard, no matter how many guards there are.
+ * A guard has had its move once it is stamped with the number of the current turn.
+ */
+final class GuardScheduler {
+    private final Level level;
+
+    GuardScheduler(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * Moves all guards that haven't moved this turn.
+     * @param guards the guards of the level
+     */
+    void moveGuards(EntityStore<Guard> guards) {
+        for (int i = 0; i < guards.size(); i++)
+            run(guards.get(i));
+    }
+
+    /**
+     * Handles a guard that runs into another guard.
+     * @param guard the guard that wants to move
+     * @param blocker the guard in front of it
+     */
+    void blocked(Guard guard, Guard blocker) {
+        if (blocker.scheduledIn != level.currentTurn) {
+            run(blocker);
+            guard.moveAhead(level);
+        } else {                                                // blocker stays, or they wait for each other
+            guard.turn180(level);
+        }
+    }
+
+    private void run(Guard guard) {
+        if (guard.scheduledIn == level.currentTurn)
+            return;
+        guard.scheduledIn = level.currentTurn;
+        guard.move(level, guard.type);
+    }
+}
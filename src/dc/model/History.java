@@ -0,0 +1,384 @@
+package dc.model;
+
+import dc.controller.Movement;
+import dc.util.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Remembers what every turn of a Level changed, so turns can be taken back and played again.
+ * A turn only records the cells of the map it replaced and the movables and forcefields it touched, each with its
+ * state before and after the turn; undoing or redoing it writes these back, it never copies the whole map.
+ * The player and the guards are recorded at the start of every turn, boxes and forcefields when they are about
+ * to change. While a turn runs, everything goes into scratch arrays that are used again in the next turn; only
+ * what really changed is copied into the step that is kept.
+ * If more changes are recorded than allowed, the oldest turns are folded together into steps of up to
+ * SNAPSHOT_TURNS turns, which only keep the state before and after them; if that isn't enough, the oldest steps
+ * are dropped.
+ * Every step also keeps the movements that led to it, together with those of the turns before it that didn't
+ * change anything, so whoever records the movements can take back and play again the same ones.
+ */
+final class History {
+    static final int SNAPSHOT_TURNS = 32;
+
+    private final Level level;
+    private final ArrayList<Step> undo = new ArrayList<>();
+    private final ArrayList<Step> redo = new ArrayList<>();
+    private long size;
+    private int maxSize = 500000;
+
+    // the turn that is recorded now
+    private boolean recording;
+    private Outcome outcomeBefore;
+    private int cellCount, entityCount;
+    private int[] cells = new int[16];
+    private Tile[] cellsBefore = new Tile[16];
+    private Tile[] entities = new Tile[16];
+    private State[] before = new State[16];
+    // the turn each cell was last recorded in, so a cell is only recorded once per turn
+    private int[] recordedIn;
+    private int turn;
+    // movements of the turns since the last step that didn't change anything, then the one of the current turn
+    private byte[] pending = new byte[16];
+    private int pendingCount;
+
+    History(Level level) {
+        this.level = level;
+        recordedIn = new int[level.getHeight() * level.getWidth()];
+    }
+
+    /**
+     * The state of a movable or a forcefield.
+     */
+    private static final class State {
+        int x, y, keys;
+        Tile standsOn;
+        Type type;
+        boolean active;
+
+        void read(Tile entity) {
+            x = entity.getPosX();
+            y = entity.getPosY();
+            type = entity.getType();
+            if (entity instanceof Movable) {
+                standsOn = ((Movable) entity).standsOn;
+                keys = entity instanceof Player ? ((Player) entity).keys : 0;
+            } else {
+                active = ((ForceField) entity).isActive();
+            }
+        }
+
+        void applyTo(Tile entity) {
+            entity.setPosX(x);
+            entity.setPosY(y);
+            entity.setType(type);
+            if (entity instanceof Movable) {
+                ((Movable) entity).standsOn = standsOn;
+                if (entity instanceof Player)
+                    ((Player) entity).keys = keys;
+                if (entity instanceof Guard)
+                    ((Guard) entity).sight = -1;            // look again from where it stands now
+            } else {
+                ((ForceField) entity).setActive(active);
+            }
+        }
+
+        boolean describes(Tile entity) {
+            if (x != entity.getPosX() || y != entity.getPosY() || type != entity.getType())
+                return false;
+            if (entity instanceof Movable)
+                return standsOn == ((Movable) entity).standsOn
+                        && (!(entity instanceof Player) || keys == ((Player) entity).keys);
+            return active == ((ForceField) entity).isActive();
+        }
+    }
+
+    /**
+     * What one or more turns changed.
+     */
+    private static final class Step {
+        int turns = 1;
+        byte[] movements;
+        int[] cells;
+        Tile[] cellsBefore, cellsAfter;
+        Tile[] entities;
+        State[] before, after;
+        Outcome outcomeBefore, outcomeAfter;
+
+        int size() {
+            return cells.length + entities.length;
+        }
+    }
+
+    /**
+     * Changes how many cells and entities may be recorded in all, older turns are folded together or dropped.
+     * @param maxSize at least 1
+     */
+    void setMaxSize(int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        this.maxSize = maxSize;
+        trim();
+    }
+
+    /**
+     * Forgets all turns, for when the level starts again.
+     */
+    void clear() {
+        undo.clear();
+        redo.clear();
+        recording = false;
+        size = 0;
+        pendingCount = 0;
+    }
+
+    /**
+     * Starts recording a turn.
+     * @param direction the movement of the player in this turn
+     * @param player the player
+     * @param guards the guards, they all act in every turn
+     */
+    void beginTurn(Movement direction, Player player, EntityStore<Guard> guards) {
+        recording = true;
+        if (pendingCount == pending.length)
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+        pending[pendingCount++] = (byte) direction.ordinal();
+        outcomeBefore = level.getOutcome();
+        cellCount = 0;
+        entityCount = 0;
+        if (++turn == 0) {                                  // after two billion turns the stamps start over
+            Arrays.fill(recordedIn, 0);
+            turn = 1;
+        }
+        record(player);
+        for (int i = 0; i < guards.size(); i++)
+            record(guards.get(i));
+    }
+
+    /**
+     * Records a box or a forcefield before it changes, if it isn't recorded in this turn yet.
+     * @param entity the box or the forcefield
+     */
+    void touch(Tile entity) {
+        if (!recording)
+            return;
+        for (int i = entityCount - 1; i >= 0; i--)
+            if (entities[i] == entity)
+                return;
+        record(entity);
+    }
+
+    /**
+     * Records a cell of the map before it is replaced, if it isn't recorded in this turn yet.
+     * @param cell row * width + col
+     * @param tile the tile that is there now
+     */
+    void cellChanging(int cell, Tile tile) {
+        if (!recording || recordedIn[cell] == turn)
+            return;
+        recordedIn[cell] = turn;
+        if (cellCount == cells.length) {
+            cells = Arrays.copyOf(cells, cellCount * 2);
+            cellsBefore = Arrays.copyOf(cellsBefore, cellCount * 2);
+        }
+        cells[cellCount] = cell;
+        cellsBefore[cellCount++] = tile;
+    }
+
+    /**
+     * Ends the turn: keeps the cells and entities that are different now, and forgets the turns that were undone.
+     */
+    void endTurn() {
+        recording = false;
+        int width = level.getWidth();
+        int changedCells = 0, changedEntities = 0;
+        for (int i = 0; i < cellCount; i++)
+            if (level.map[cells[i] / width][cells[i] % width] != cellsBefore[i])
+                changedCells++;
+        for (int i = 0; i < entityCount; i++)
+            if (!before[i].describes(entities[i]))
+                changedEntities++;
+        Outcome outcomeAfter = level.getOutcome();
+        if (changedCells == 0 && changedEntities == 0 && outcomeAfter == outcomeBefore)
+            return;
+
+        Step step = new Step();
+        step.movements = Arrays.copyOf(pending, pendingCount);
+        pendingCount = 0;
+        step.outcomeBefore = outcomeBefore;
+        step.outcomeAfter = outcomeAfter;
+        step.cells = new int[changedCells];
+        step.cellsBefore = new Tile[changedCells];
+        step.cellsAfter = new Tile[changedCells];
+        for (int i = 0, k = 0; i < cellCount; i++) {
+            Tile now = level.map[cells[i] / width][cells[i] % width];
+            if (now != cellsBefore[i]) {
+                step.cells[k] = cells[i];
+                step.cellsBefore[k] = cellsBefore[i];
+                step.cellsAfter[k++] = now;
+            }
+        }
+        step.entities = new Tile[changedEntities];
+        step.before = new State[changedEntities];
+        step.after = new State[changedEntities];
+        for (int i = 0, k = 0; i < entityCount; i++)
+            if (!before[i].describes(entities[i])) {
+                step.entities[k] = entities[i];
+                step.before[k] = before[i];
+                before[i] = null;                           // kept by the step, the scratch needs a new one
+                step.after[k] = new State();
+                step.after[k++].read(entities[i]);
+            }
+        Arrays.fill(entities, 0, entityCount, null);
+        Arrays.fill(cellsBefore, 0, cellCount, null);
+        redo.clear();
+        undo.add(step);
+        size += step.size();
+        trim();
+    }
+
+    /**
+     * Takes back the last step.
+     * @return how many movements were taken back: those of the step and of the turns after it, 0 if there is none
+     */
+    int undo() {
+        if (undo.isEmpty())
+            return 0;
+        Step step = undo.remove(undo.size() - 1);
+        size -= step.size();
+        apply(step, step.cellsBefore, step.before, step.outcomeBefore);
+        redo.add(step);
+        int movements = step.movements.length + pendingCount;
+        pendingCount = 0;
+        return movements;
+    }
+
+    /**
+     * Plays the last step that was taken back again.
+     * The turns played since the undo didn't change anything, so the movements of the step can follow them;
+     * from then on they belong to the step, so undoing it again takes them back as well.
+     * @return the movements of the step, null if there is none
+     */
+    byte[] redo() {
+        if (redo.isEmpty())
+            return null;
+        Step step = redo.remove(redo.size() - 1);
+        apply(step, step.cellsAfter, step.after, step.outcomeAfter);
+        undo.add(step);
+        size += step.size();
+        byte[] movements = step.movements;
+        if (pendingCount > 0) {
+            step.movements = Arrays.copyOf(pending, pendingCount + movements.length);
+            System.arraycopy(movements, 0, step.movements, pendingCount, movements.length);
+            pendingCount = 0;
+        }
+        return movements;
+    }
+
+    private void record(Tile entity) {
+        if (entityCount == entities.length) {
+            entities = Arrays.copyOf(entities, entityCount * 2);
+            before = Arrays.copyOf(before, entityCount * 2);
+        }
+        if (before[entityCount] == null)
+            before[entityCount] = new State();
+        before[entityCount].read(entity);
+        entities[entityCount++] = entity;
+    }
+
+    private void apply(Step step, Tile[] tiles, State[] states, Outcome outcome) {
+        int width = level.getWidth();
+        for (int i = 0; i < step.entities.length; i++) {
+            Tile entity = step.entities[i];
+            level.fireTileUpdate(entity.getPosX(), entity.getPosY());
+            states[i].applyTo(entity);
+            level.fireTileUpdate(entity.getPosX(), entity.getPosY());
+        }
+        for (int i = 0; i < step.cells.length; i++) {
+            level.setTile(step.cells[i] / width, step.cells[i] % width, tiles[i]);
+            level.fireTileUpdate(step.cells[i] / width, step.cells[i] % width);
+        }
+        for (int i = 0; i < step.cells.length; i++)
+            level.groundChanged(step.cells[i] / width, step.cells[i] % width);
+        for (int i = 0; i < step.entities.length; i++)
+            if (step.entities[i] instanceof ForceField)     // opening it doesn't replace the cell
+                level.groundChanged(step.entities[i].getPosX(), step.entities[i].getPosY());
+        level.restored(outcome);
+    }
+
+    /**
+     * Folds the oldest steps together, or drops them, until the recorded changes fit.
+     * Only the older half of the steps is folded, so the last turns can always be taken back one by one.
+     */
+    private void trim() {
+        while (size > maxSize && !undo.isEmpty()) {
+            int i = 0;
+            while (i + 1 < undo.size() / 2 && undo.get(i).turns + undo.get(i + 1).turns > SNAPSHOT_TURNS)
+                i++;
+            if (i + 1 >= undo.size() / 2) {
+                size -= undo.remove(0).size();              // nothing left to fold
+                continue;
+            }
+            Step older = undo.get(i), newer = undo.get(i + 1);
+            Step merged = merge(older, newer);
+            size += merged.size() - older.size() - newer.size();
+            undo.set(i, merged);
+            undo.remove(i + 1);
+        }
+    }
+
+    /**
+     * Makes one step out of two that follow each other, with the state before the first and after the second.
+     */
+    private static Step merge(Step older, Step newer) {
+        Step merged = new Step();
+        merged.turns = older.turns + newer.turns;
+        merged.movements = Arrays.copyOf(older.movements, older.movements.length + newer.movements.length);
+        System.arraycopy(newer.movements, 0, merged.movements, older.movements.length, newer.movements.length);
+        merged.outcomeBefore = older.outcomeBefore;
+        merged.outcomeAfter = newer.outcomeAfter;
+
+        HashMap<Integer, Integer> cellAt = new HashMap<>();
+        for (int i = 0; i < older.cells.length; i++)
+            cellAt.put(older.cells[i], i);
+        int count = older.cells.length;
+        for (int cell : newer.cells)
+            if (!cellAt.containsKey(cell))
+                count++;
+        merged.cells = Arrays.copyOf(older.cells, count);
+        merged.cellsBefore = Arrays.copyOf(older.cellsBefore, count);
+        merged.cellsAfter = Arrays.copyOf(older.cellsAfter, count);
+        for (int i = 0, k = older.cells.length; i < newer.cells.length; i++) {
+            Integer at = cellAt.get(newer.cells[i]);
+            if (at == null) {
+                at = k;
+                merged.cells[k] = newer.cells[i];
+                merged.cellsBefore[k++] = newer.cellsBefore[i];
+            }
+            merged.cellsAfter[at] = newer.cellsAfter[i];
+        }
+
+        HashMap<Tile, Integer> entityAt = new HashMap<>();
+        for (int i = 0; i < older.entities.length; i++)
+            entityAt.put(older.entities[i], i);
+        count = older.entities.length;
+        for (Tile entity : newer.entities)
+            if (!entityAt.containsKey(entity))
+                count++;
+        merged.entities = Arrays.copyOf(older.entities, count);
+        merged.before = Arrays.copyOf(older.before, count);
+        merged.after = Arrays.copyOf(older.after, count);
+        for (int i = 0, k = older.entities.length; i < newer.entities.length; i++) {
+            Integer at = entityAt.get(newer.entities[i]);
+            if (at == null) {
+                at = k;
+                merged.entities[k] = newer.entities[i];
+                merged.before[k++] = newer.before[i];
+            }
+            merged.after[at] = newer.after[i];
+        }
+        return merged;
+    }
+}
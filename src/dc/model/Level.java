@@ -4,105 +4,257 @@
 package dc.model;
 
 import dc.controller.Movement;
-import dc.util.In;
 import dc.util.Out;
 import dc.util.Type;
 import dc.view.TileBoardView;
 
+import java.util.Arrays;
+import java.util.BitSet;
+
 /**
  * Handles most of the model of DisCaptive. Has all the references to important tile-objects.
  */
 public class Level implements TileBoardModel<Tile> {
     private String name;
+    private int number;
     private int height, width, numberOfBoxes, numberOfGuards;
-    private List<Guard> guards = new List<Guard>();
-    private List<Box> boxes = new List<Box>();
-    List<ForceField> blueForceFields = new List<ForceField>();
-    List<ForceField> redForceFields = new List<ForceField>();
+    // every movable and forcefield of the level, in the order of the template
+    private EntityStore<Guard> guards = new EntityStore<>();
+    private EntityStore<Box> boxes = new EntityStore<>();
+    private EntityStore<ForceField> blueForceFields = new EntityStore<>();
+    private EntityStore<ForceField> redForceFields = new EntityStore<>();
     Tile[][] map;
+    SightLines sightLines;
+    final GuardScheduler guardScheduler = new GuardScheduler(this);
+    // number of the current turn, movables remember the turn they last moved in
+    int currentTurn = 1;
     private Player player;
-    private List<TileBoardView> views;
+    private Player[] players;
+    private EntityStore<TileBoardView> views;
+    private DistanceFields distanceFields;
+    // the first outcome since the level started, a walk to a clicked cell stops once it isn't RUNNING
+    private Outcome outcome = Outcome.RUNNING;
+    // the walk to a clicked cell and its next step, null if there is none
+    private Movement[] walk;
+    private int walkStep;
+    // the turns played so far, to take them back
+    History history;
+    // cells that changed during the current turn, the views get them all at once when the turn ends
+    private final BitSet changedCells = new BitSet();
+    private LevelTemplate template;
 
     /**
      * Creates a new Level, runs all necessary methods to load the level
      * @param i The number of the level
      */
     public Level(int i) {
-        views = new List<>();
+        views = new EntityStore<>();
         createName(i);
-        calculateHeight();
-        calculateWidth();
-        readMap();
+        loadMap();
     }
 
     /**
      * Handles mouse click
-     * Checks the position of the click and tells the player to move into that direction.
+     * Finds the shortest way to the clicked tile around walls, gaps, closed forcefields and, without a key, locks,
+     * and queues it as a walk, which walk() plays one turn per call. If a box is clicked, the way leads next to it
+     * and the last step pushes it. A new click replaces the walk, a move, undo, redo or restart drops it.
      * @param row row of click
      * @param col collum of click
      */
     public void handleClick(int row, int col){
-        if(row == player. getPosX()) {
-            if (col > player.getPosY())
-                move(Movement.RIGHT);
-            else
-            if(!(col == player.getPosY()))
-                move(Movement.LEFT);
-        }else{
-            if(col == player.getPosY())
-                if(row > player.getPosX())
-                    move(Movement.DOWN);
-                else
-                    move(Movement.UP);
+        walk = null;
+        if (player == null || outcome != Outcome.RUNNING)
+            return;
+        Movement[] route = map[row][col] instanceof Box ? routeToPush(row, col) : routeTo(row, col);
+        if (route == null) {
+            updateStatusLine("You can't get there.");
+            return;
+        }
+        if (route.length > 0) {
+            walk = route;
+            walkStep = 0;
         }
+    }
+
+    /**
+     * Plays the next step of the walk to the clicked tile as a turn.
+     * The walk stops early if a box or a guard is in the way, the player doesn't get where the step should lead
+     * (a lock without key), or the level is won or lost.
+     * @return true if there are steps left
+     */
+    public boolean walk() {
+        if (walk == null)
+            return false;
+        Movement[] route = walk;
+        int i = walkStep;
+        walk = null;
+        Movement step = route[i];
+        int x = player.getPosX(), y = player.getPosY();
+        switch (step) {
+            case UP:
+                x--;
+                break;
+            case DOWN:
+                x++;
+                break;
+            case LEFT:
+                y--;
+                break;
+            case RIGHT:
+                y++;
+                break;
+        }
+        if (map[x][y] instanceof Movable && !(i == route.length - 1 && map[x][y] instanceof Box))
+            return false;
+        move(step);
+        if (outcome != Outcome.RUNNING || player.getPosX() != x || player.getPosY() != y || i == route.length - 1)
+            return false;
+        walk = route;
+        walkStep = i + 1;
+        return true;
+    }
+
+    /**
+     * Finds the shortest way of the player to a tile, without moving.
+     * Boxes and guards are not taken into account, locks only if the player has a key.
+     * @param row row of the tile
+     * @param col collum of the tile
+     * @return the movements, empty if the player is already there, null if there is no way
+     */
+    public Movement[] routeTo(int row, int col) {
+        if (player == null)
+            return null;
+        return distanceFields.route(player.getPosX() * width + player.getPosY(), row * width + col, player.getKeys() > 0);
+    }
 
+    /**
+     * Finds the shortest way of the player next to a box, followed by the step that pushes it.
+     * @param row row of the box
+     * @param col collum of the box
+     * @return the movements, null if there is no way
+     */
+    private Movement[] routeToPush(int row, int col) {
+        Movement[] best = null;
+        for (Movement push : new Movement[]{Movement.UP, Movement.DOWN, Movement.LEFT, Movement.RIGHT}) {
+            int x = row, y = col;                                           // the cell the push starts from
+            switch (push) {
+                case UP:
+                    x++;
+                    break;
+                case DOWN:
+                    x--;
+                    break;
+                case LEFT:
+                    y++;
+                    break;
+                case RIGHT:
+                    y--;
+                    break;
+            }
+            if (x < 0 || x >= height || y < 0 || y >= width)
+                continue;
+            Movement[] route = routeTo(x, y);
+            if (route != null && (best == null || route.length + 1 < best.length)) {
+                best = Arrays.copyOf(route, route.length + 1);
+                best[route.length] = push;
+            }
+        }
+        return best;
     }
 
     /**
      * Moves the player and all guards
-     * Moves the player in the direction of the parameter, all guards move, resets all movedThisTurn booleans.
+     * Moves the player in the direction of the parameter, every guard moves once, tells the views about the changed
+     * tiles and ends the turn. What the turn changed is recorded, so it can be taken back.
      * @param direction direction
      */
     public void move(Movement direction) {
+        walk = null;
         for (TileBoardView view : views)
             view.updateStatusLine("");
+        history.beginTurn(direction, player, guards);
         player.move(this, direction);
-        for (int i = 0; i < getNumberOfGuards(); i++)
-            guards.move(this);
+        guardScheduler.moveGuards(guards);
+        fireTileUpdates();
+        history.endTurn();
+        resetMovedThisTurn();
         for (TileBoardView view : views)
-            view.updateTile(1, 1);
+            view.turnPlayed(direction);
+    }
 
-        resetMovedThisTurn();
+    /**
+     * Takes back the last turn that changed something, also one that won or lost the level.
+     * Only the cells and entities the turn changed are written back, then the views are told about them
+     * and how many movements were taken back.
+     * @return false if there is nothing to take back
+     */
+    public boolean undo() {
+        walk = null;
+        int movements = history != null ? history.undo() : 0;
+        if (movements == 0)
+            return false;
+        for (TileBoardView view : views)
+            view.turnsTakenBack(movements);
+        return true;
+    }
+
+    /**
+     * Plays the last turn that was taken back again.
+     * The views are told about the changed tiles, then about the movements of the turn as if it was played.
+     * @return false if there is none, or a new move was made since
+     */
+    public boolean redo() {
+        walk = null;
+        byte[] movements = history != null ? history.redo() : null;
+        if (movements == null)
+            return false;
+        for (byte movement : movements)
+            for (TileBoardView view : views)
+                view.turnPlayed(Movement.values()[movement]);
+        return true;
+    }
+
+    /**
+     * Limits how many changed cells and entities the undo history keeps. Older turns are folded together into
+     * steps of up to History.SNAPSHOT_TURNS turns, which can only be taken back as a whole, or dropped.
+     * @param maxChanges at least 1
+     */
+    public void setHistoryLimit(int maxChanges) {
+        history.setMaxSize(maxChanges);
+    }
+
+    /**
+     * @return the first outcome since the level started, RUNNING if it is neither won nor lost yet
+     */
+    public Outcome getOutcome() {
+        return outcome;
     }
 
     /**
      * Reloads the level
-     * Clears all lists of guards, boxes and forcefields and reloads the entire map from scratch. Then tells all views to update themselves.
+     * Copies the starting map back from the template and puts all movables and forcefields back where they started,
+     * without reading the file again. Then tells all views to update themselves.
      */
     public void resetLevel(){
-        guards.clear();
-        boxes.clear();
-        blueForceFields.clear();
-        redForceFields.clear();
-        readMap();
+        walk = null;
+        if (template != null && template.isValid())
+            restore();
+        else
+            loadMap();
         for (TileBoardView view : views)
             view.updateView();
     }
 
     /**
      * Starts a new level.
-     * Clears all lists of guards, boxes und forcefields, checks if the level number is available and then calculates heigth and width to finally read the map.
+     * Gets the template of the level from the LevelCache, which only reads the file if it isn't cached or has changed,
+     * and builds the map from it.
      * @param no the number of the level
      */
     public void startNewLevel(int no){
-        guards.clear();
-        boxes.clear();
-        blueForceFields.clear();
-        redForceFields.clear();
+        walk = null;
         createName(no);
-        calculateHeight();
-        calculateWidth();
-        readMap();
+        loadMap();
     }
 
 
@@ -135,21 +287,21 @@ public class Level implements TileBoardModel<Tile> {
     }
 
     /**
-     * Appends the view to the list views, so multiple views can be updated
+     * Adds the view to the views, so multiple views can be updated
      * @param view
      */
 
     public void registerView(TileBoardView view) {
-        views.prepend(view);
+        views.add(view);
     }
 
     /**
-     * Deletes view from the list, so the view won't be updated anymore
+     * Removes the view from the views, so the view won't be updated anymore
      * @param view
      */
 
     public void unregisterView(TileBoardView view) {
-        views.delete(view);
+        views.remove(view);
     }
 
     public int getHeight() {
@@ -160,6 +312,10 @@ public class Level implements TileBoardModel<Tile> {
         return width;
     }
 
+    public int getLevelNumber() {
+        return number;
+    }
+
 
     /**
      * Updates the statusline in all views
@@ -171,19 +327,33 @@ public class Level implements TileBoardModel<Tile> {
     }
 
     /**
-     * Tells all views to update the tile rowNr, colNr
+     * Remembers that the tile rowNr, colNr changed, the views are told when the turn ends
      * @param rowNr row
      * @param colNr collum
      */
     protected void fireTileUpdate(int rowNr, int colNr) {
+        if (!views.isEmpty())
+            changedCells.set(rowNr * width + colNr);
+    }
+
+    /**
+     * Tells all views to update the tiles that changed since the last time, every tile once
+     */
+    protected void fireTileUpdates() {
+        if (changedCells.isEmpty())
+            return;
         for (TileBoardView view : views)
-            view.updateTile(rowNr, colNr);
+            view.updateTiles(changedCells, width);
+        changedCells.clear();
     }
 
     /**
      * tells all views that to handle that the level is won
      */
     protected void handelLevelComplete() {
+        if (outcome == Outcome.RUNNING)
+            outcome = Outcome.WON;
+        fireTileUpdates();
         for (TileBoardView view : views)
             view.announceLevelComplete();
     }
@@ -192,160 +362,189 @@ public class Level implements TileBoardModel<Tile> {
      * tells all views to handle that the level is lost
      */
     protected void handleLevelLost() {
+        if (outcome == Outcome.RUNNING)
+            outcome = Outcome.LOST;
+        fireTileUpdates();
         for (TileBoardView view : views)
             view.announceLevelLost();
     }
 
 
     /**
-     * resets the movedThisTurn boolen of all movable objects
+     * Opens all forcefields of one color and tells the views to update them.
+     * @param color Type.BLUE or Type.RED
      */
+    void openForceFields(Type color) {
+        EntityStore<ForceField> fields = color == Type.BLUE ? blueForceFields : redForceFields;
+        Type open = color == Type.BLUE ? Type.BLUEOPEN : Type.REDOPNEN;
+        for (int i = 0; i < fields.size(); i++) {
+            ForceField field = fields.get(i);
+            history.touch(field);
+            field.setActive(false);
+            field.setType(open);
+            fireTileUpdate(field.getPosX(), field.getPosY());
+            groundChanged(field.getPosX(), field.getPosY());
+        }
+    }
 
+    /**
+     * Ends the turn. Everything that moved in it counts as not moved any more, without touching the movables.
+     */
     protected void resetMovedThisTurn() {
-        player.setMovedThisTurn(false);
-        guards.reset();
-        boxes.reset();
+        currentTurn++;
+    }
+
+    /**
+     * Finishes taking back or playing again a turn: a new turn starts, so no movable counts as moved, and the
+     * views get the changed tiles. Playing again a turn that won or lost the level announces that again.
+     * @param outcome the outcome after the turn
+     */
+    void restored(Outcome outcome) {
+        Outcome before = this.outcome;
+        this.outcome = outcome;
+        currentTurn++;
+        updateStatusLine("");
+        fireTileUpdates();
+        if (before == Outcome.RUNNING && outcome == Outcome.WON)
+            for (TileBoardView view : views)
+                view.announceLevelComplete();
+        if (before == Outcome.RUNNING && outcome == Outcome.LOST)
+            for (TileBoardView view : views)
+                view.announceLevelLost();
+    }
+
+    /**
+     * Puts a tile on the map, records the old one for undo and tells the guards that might be looking at it.
+     * @param rowNr row
+     * @param colNr collum
+     * @param tile the new tile
+     */
+    void setTile(int rowNr, int colNr, Tile tile) {
+        history.cellChanging(rowNr * width + colNr, map[rowNr][colNr]);
+        map[rowNr][colNr] = tile;
+        sightLines.tileChanged(rowNr, colNr, tile);
+    }
+
+    /**
+     * Tells the distance fields that whether the player can walk on a tile may have changed: a box came or left,
+     * a gap was filled, a lock was opened or a forcefield was opened.
+     * @param rowNr row
+     * @param colNr collum
+     */
+    void groundChanged(int rowNr, int colNr) {
+        distanceFields.cellChanged(rowNr, colNr);
+    }
+
+    /**
+     * Gets the template of the level and sets height and width before the map is built.
+     * Clears the stores of guards, boxes and forcefields.
+     */
+    private void loadMap() {
+        guards.clear();
+        boxes.clear();
+        blueForceFields.clear();
+        redForceFields.clear();
+        changedCells.clear();
+        template = LevelCache.shared().get(getName());
+        if (template == null) {
+            Out.println("Map '" + name + "' does not exist.");
+            setHeight(0);
+            setWidth(0);
+        } else {
+            setHeight(template.height);
+            setWidth(template.width);
+        }
+        readMap();
     }
 
     /**
-     * Reads the map from a textfile
-     * Creates a 2 dimensional array and fills it with objects
-     * Also adds all movable objects to their lists
+     * Builds the map from the template
+     * Creates a 2 dimensional array and the movables and forcefields of the level
+     * Also adds them to their stores
      */
     private void readMap() {
         if (getHeight() >= 4 && getWidth() >= 4) {
             map = new Tile[getHeight()][getWidth()];
-            char[] line;
-
-            In.open(name);
-            for (int p = 0; p < getHeight(); p++) {
-                line = In.readLine().toCharArray();
-                int i = 0;
-                for (; i < line.length; i++) {
-                    switch (line[i]) {
-                        case ' ':
-                            map[p][i] = new EmptyPassage(p, i);
-                            break;
-                        case '#':
-                            map[p][i] = new Wall(p, i);
-                            break;
-                        case '$':
-                            map[p][i] = new Box(p, i, this);
-                            boxes.append((Box) map[p][i]);
-                            setNumberOfBoxes(getNumberOfBoxes() + 1);
-                            break;
-                        case '@':
-                            player = new Player(p, i, this);
-                            map[p][i] = player;
-                            break;
-                        case '.':
-                            map[p][i] = new PlayerGoal(p, i);
-                            break;
-                        case '*':
-                            map[p][i] = new BoxOverGoal(p, i, this);
-                            boxes.append((Box) map[p][i]);
-                            setNumberOfBoxes(getNumberOfBoxes() + 1);
-                            break;
-                        case '!':
-                            map[p][i] = new Gap(p, i);
-                            break;
-                        case 'N':
-                        case 'O':
-                        case 'S':
-                        case 'W':
-                            map[p][i] = new Guard(p, i, line[i], this);
-                            setNumberOfGuards(getNumberOfGuards() + 1);
-                            guards.append((Guard) map[p][i]);
-                            break;
-                        case 'R':
-                            map[p][i] = new SwitchDirection(p, i, Type.RIGHT);
-                            break;
-                        case 'L':
-                            map[p][i] = new SwitchDirection(p, i, Type.LEFT);
-                            break;
-                        case 'X':
-                            map[p][i] = new ForceField(p, i, Type.BLUE, true);
-                            blueForceFields.append(((ForceField) map[p][i]));
-                            break;
-                        case 'Y':
-                            map[p][i] = new ForceField(p, i, Type.RED, true);
-                            redForceFields.append(((ForceField) map[p][i]));
-                            break;
-                        case 'x':
-                            map[p][i] = new ForceFieldOpener(p, i, Type.BLUE);
-                            break;
-                        case 'y':
-                            map[p][i] = new ForceFieldOpener(p, i, Type.RED);
-                            break;
-                        case 'z':
-                            map[p][i] = new Key(p, i);
-                            break;
-                        case 'Z':
-                            map[p][i] = new Lock(p, i);
-                            break;
-                        default:
-
-                    }
-                }
-                if (i < getWidth()) {
-                    for (; i < getWidth(); i++) {
-                        map[p][i] = new EmptyPassage(p, i);
-                    }
-                }
+            sightLines = new SightLines(this);
+            distanceFields = new DistanceFields(this);
+            history = new History(this);
+            players = new Player[template.players.length];
+            for (int i = 0; i < players.length; i++)
+                players[i] = new Player(row(template.players[i]), col(template.players[i]), this);
+            player = players.length > 0 ? players[players.length - 1] : null;
+            for (int cell : template.boxes) {
+                if (template.glyphAt(cell) == '*')
+                    boxes.add(new BoxOverGoal(row(cell), col(cell), this));
+                else
+                    boxes.add(new Box(row(cell), col(cell), this));
             }
-            In.close();
-
+            for (int cell : template.guards)
+                guards.add(new Guard(row(cell), col(cell), template.glyphAt(cell), this));
+            for (int cell : template.blueFields)
+                blueForceFields.add(new ForceField(row(cell), col(cell), Type.BLUE, true));
+            for (int cell : template.redFields)
+                redForceFields.add(new ForceField(row(cell), col(cell), Type.RED, true));
+            setNumberOfBoxes(boxes.size());
+            setNumberOfGuards(guards.size());
+            restore();
         } else {
             Out.println("Map '" + name + "' is not a valid map.");
         }
     }
 
     /**
-     * Opens the textfile and sets the width for the level
+     * Puts the level back into the state it starts in.
+     * The rows of the map are copied from the template, the movables and forcefields are put back on their cells.
      */
-    private void calculateWidth() {
-        In.open(name);
-        if (In.done()) {
-            int max = 0;
-            String zeile = "";
-            do {
-                zeile = In.readLine();
-                if (zeile.length() > max) {
-                    max = zeile.length();
-                }
-            } while (In.done());
-            In.close();
-            setWidth(max);
-        } else {
-            Out.println("Map '" + name + "' does not exist.");
+    private void restore() {
+        for (int p = 0; p < getHeight(); p++)
+            template.copyRow(p, map[p]);
+        currentTurn = 1;
+        outcome = Outcome.RUNNING;
+        changedCells.clear();
+        history.clear();
+        sightLines.clear();
+        for (int i = 0; i < players.length; i++)
+            place(players[i], template.players[i]);
+        for (int i = 0; i < boxes.size(); i++)
+            place(boxes.get(i), template.boxes[i]);
+        for (int i = 0; i < guards.size(); i++) {
+            place(guards.get(i), template.guards[i]);
+            guards.get(i).face(template.glyphAt(template.guards[i]));
         }
+        close(blueForceFields, Type.BLUE);
+        close(redForceFields, Type.RED);
+        distanceFields.invalidate();
     }
 
-    /**
-     * Opens the textfile and sets the height for the level
-     */
-    private void calculateHeight() {
-        In.open(name);
-        if (In.done()) {
-            String zeile = "";
-            int counter = 0;
-            do {
-                zeile = In.readLine();
-                counter++;
-            } while (In.done());
-            counter--;
-            In.close();
-            setHeight(counter);
-        } else {
-            Out.println("Map '" + name + "' does not exist.");
+    private void close(EntityStore<ForceField> fields, Type color) {
+        for (int i = 0; i < fields.size(); i++) {
+            ForceField field = fields.get(i);
+            field.close(color);
+            map[field.getPosX()][field.getPosY()] = field;
         }
     }
 
+    private void place(Movable movable, int cell) {
+        int x = row(cell), y = col(cell);
+        movable.respawn(x, y, template.floorAt(x, y));
+        map[x][y] = movable;
+    }
+
+    private int row(int cell) {
+        return cell / getWidth();
+    }
+
+    private int col(int cell) {
+        return cell % getWidth();
+    }
+
     /**
      * Takes i and creates the levelname, so other functions can know the name of the textfile
      * @param i level
      */
     private void createName(int i) {
+        number = i;
         setName("Level" + i + ".txt");
     }
 
@@ -382,4 +581,4 @@ public class Level implements TileBoardModel<Tile> {
     private void setNumberOfBoxes(int numberOfBoxes) {
         this.numberOfBoxes = numberOfBoxes;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+package dc.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the parsed templates of the levels that were used last, shared by all levels in the JVM.
+ * An entry belongs to a file with a certain size and modification time; if the file changes on disk
+ * the entry is dropped and the level is read again. When there are more entries than allowed, the one
+ * that was used the longest time ago goes first.
+ */
+public final class LevelCache {
+    private static final LevelCache shared = new LevelCache(32);
+
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxSize;
+    private long hits, misses, evictions;
+
+    /**
+     * A template and the file it was read from.
+     */
+    private static class Entry {
+        final LevelTemplate template;
+        final long size, modified;
+
+        Entry(LevelTemplate template, long size, long modified) {
+            this.template = template;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * Creates an empty cache.
+     * @param maxSize how many levels it keeps at most
+     */
+    public LevelCache(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * @return the cache that Level and CompactLevel use
+     */
+    public static LevelCache shared() {
+        return shared;
+    }
+
+    /**
+     * Returns the template of a level file. Reads it if it isn't cached or the file has changed since.
+     * @param name name of the textfile
+     * @return the template or null if the file can't be read
+     */
+    LevelTemplate get(String name) {
+        Path path = Paths.get(name).toAbsolutePath();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            synchronized (this) {
+                entries.remove(path);
+            }
+            return null;
+        }
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        synchronized (this) {
+            Entry entry = entries.get(path);
+            if (entry != null && entry.size == size && entry.modified == modified) {
+                hits++;
+                return entry.template;
+            }
+            misses++;
+        }
+        LevelLoader file = LevelLoader.read(name);          // read outside the lock, other levels can be served meanwhile
+        if (file == null)
+            return null;
+        LevelTemplate template = new LevelTemplate(name, file);
+        synchronized (this) {
+            entries.put(path, new Entry(template, size, modified));
+            evict();
+        }
+        return template;
+    }
+
+    /**
+     * Changes how many levels the cache keeps, dropping the least recently used ones if there are too many.
+     * @param maxSize at least 1
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return how often a level was found in the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return how often a level had to be read, because it wasn't cached or its file had changed
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return how many levels were dropped to stay within the size
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Drops all levels, the counters are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Path, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxSize) {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package dc.model;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.SortedMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Knows which levels ("Level" number ".txt") are in a directory.
+ * The directory is scanned once, after that it can be watched, so added or deleted level files are
+ * reported to the listeners without scanning again.
+ */
+public class LevelCatalog {
+
+    /**
+     * Gets told when a level file appears or disappears. Called on the thread that watches the directory.
+     */
+    public interface Listener {
+        void levelAdded(int no);
+
+        void levelRemoved(int no);
+    }
+
+    private final Path directory;
+    private final TreeSet<Integer> levels = new TreeSet<>();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private WatchService watcher;
+
+    /**
+     * Creates the catalog and scans the directory once.
+     * @param directory directory with the level files
+     */
+    public LevelCatalog(Path directory) {
+        this.directory = directory.toAbsolutePath();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "Level*.txt")) {
+            for (Path file : files) {
+                int no = levelNumber(file.getFileName().toString());
+                if (no >= 0)
+                    levels.add(no);
+            }
+        } catch (IOException e) {
+            // an unreadable directory has no levels
+        }
+    }
+
+    /**
+     * Returns the number of a level file.
+     * @param fileName name of the file
+     * @return the number or -1 if it is not called "Level" number ".txt", also if the number starts with a 0,
+     * since the game would open the file without it
+     */
+    public static int levelNumber(String fileName) {
+        if (!fileName.startsWith("Level") || !fileName.endsWith(".txt") || fileName.length() == 9)
+            return -1;
+        if (fileName.charAt(5) == '0' && fileName.length() > 10)  // "Level01.txt" isn't "Level1.txt"
+            return -1;
+        int no = 0;
+        for (int i = 5; i < fileName.length() - 4; i++) {
+            char c = fileName.charAt(i);
+            if (c < '0' || c > '9' || no > 100000000)
+                return -1;
+            no = no * 10 + (c - '0');
+        }
+        return no;
+    }
+
+    /**
+     * @return all known level numbers in ascending order
+     */
+    public synchronized int[] getLevels() {
+        int[] result = new int[levels.size()];
+        int i = 0;
+        for (int no : levels)
+            result[i++] = no;
+        return result;
+    }
+
+    /**
+     * Reads all levels of the catalog in parallel, spread over all cores.
+     * Every level is read by its own LevelLoader, so the files don't wait for each other.
+     * @return the loaded levels by number, without the ones that can't be read
+     */
+    public SortedMap<Integer, LevelLoader> loadAll() {
+        ConcurrentSkipListMap<Integer, LevelLoader> loaded = new ConcurrentSkipListMap<>();
+        Arrays.stream(getLevels()).parallel().forEach(no -> {
+            LevelLoader file = LevelLoader.read(directory.resolve("Level" + no + ".txt"));
+            if (file != null)
+                loaded.put(no, file);
+        });
+        return loaded;
+    }
+
+    public synchronized boolean contains(int no) {
+        return levels.contains(no);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts watching the directory on a daemon thread. Does nothing if it is already watched.
+     */
+    public synchronized void startWatching() {
+        if (watcher != null)
+            return;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            watcher = null;
+            return;
+        }
+        Thread thread = new Thread(this::watch, "level-catalog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the directory.
+     */
+    public synchronized void stopWatching() {
+        if (watcher == null)
+            return;
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+        watcher = null;
+    }
+
+    private void watch() {
+        WatchService service = watcher;
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                        continue;
+                    int no = levelNumber(event.context().toString());
+                    if (no < 0)
+                        continue;
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE)
+                        added(no);
+                    else
+                        removed(no);
+                }
+                if (!key.reset())
+                    return;
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // watching stopped
+        }
+    }
+
+    private void added(int no) {
+        synchronized (this) {
+            if (!levels.add(no))
+                return;
+        }
+        for (Listener listener : listeners)
+            listener.levelAdded(no);
+    }
+
+    private void removed(int no) {
+        synchronized (this) {
+            if (!levels.remove(no))
+                return;
+        }
+        for (Listener listener : listeners)
+            listener.levelRemoved(no);
+    }
+}
@@ -0,0 +1,120 @@
+package dc.model;
+
+import dc.util.TextReader;
+
+import java.nio.CharBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Reads a level file in a single pass.
+ * The file is read into one buffer through a TextReader, then the line breaks are indexed once.
+ * Height and width of the map are known after that pass, so the tile grid can be built straight from the buffer.
+ * Lines end at '\n', '\r' or "\r\n", the same way dc.util.In reads them. Every loader has its own reader,
+ * so several threads can load levels at the same time.
+ */
+public final class LevelLoader {
+    private final char[] data;
+    private final int[] lineStart;
+    private final int[] lineEnd;
+    private final int height, width;
+
+    private LevelLoader(char[] data, int length) {
+        this.data = data;
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int rows = 0, max = 0, start = 0, i = 0;
+        while (i < length) {
+            char c = data[i];
+            if (c == '\n' || c == '\r') {
+                if (rows == starts.length) {
+                    starts = grow(starts);
+                    ends = grow(ends);
+                }
+                starts[rows] = start;
+                ends[rows] = i;
+                if (i - start > max)
+                    max = i - start;
+                rows++;
+                if (c == '\r' && i + 1 < length && data[i + 1] == '\n')
+                    i++;
+                start = i + 1;
+            }
+            i++;
+        }
+        if (start < length) {                           // last line without line break
+            if (rows == starts.length) {
+                starts = grow(starts);
+                ends = grow(ends);
+            }
+            starts[rows] = start;
+            ends[rows] = length;
+            if (length - start > max)
+                max = length - start;
+            rows++;
+        }
+        lineStart = starts;
+        lineEnd = ends;
+        height = rows;
+        width = max;
+    }
+
+    /**
+     * Reads the level file with the given name.
+     * @param name name of the textfile
+     * @return the loaded file or null if it can't be read
+     */
+    public static LevelLoader read(String name) {
+        return read(Paths.get(name));
+    }
+
+    /**
+     * Reads a level file.
+     * @param file the textfile
+     * @return the loaded file or null if it can't be read
+     */
+    public static LevelLoader read(Path file) {
+        TextReader reader = TextReader.open(file);
+        if (reader == null)
+            return null;
+        try {
+            CharBuffer text = reader.readAll();
+            return reader.done() ? new LevelLoader(text.array(), text.limit()) : null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the length of a line, which can be shorter than the width of the map.
+     * @param row row
+     * @return number of characters in that line
+     */
+    public int getLineLength(int row) {
+        return lineEnd[row] - lineStart[row];
+    }
+
+    /**
+     * Returns the character at a position of the map.
+     * @param row row
+     * @param col collum, has to be smaller than the length of the line
+     * @return character
+     */
+    public char charAt(int row, int col) {
+        return data[lineStart[row] + col];
+    }
+
+    private static int[] grow(int[] array) {
+        int[] bigger = new int[array.length * 2];
+        System.arraycopy(array, 0, bigger, 0, array.length);
+        return bigger;
+    }
+}
@@ -0,0 +1,57 @@
+package dc.model;
+
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads levels into the LevelCache on a background thread before they are started,
+ * so startNewLevel finds them ready and doesn't have to wait for the disk.
+ */
+public final class LevelPrefetcher {
+    private static final LevelPrefetcher shared = new LevelPrefetcher();
+
+    /**
+     * Gets told when a level has been read. Called on the background thread.
+     */
+    public interface Listener {
+        void levelReady(int no, int height, int width);
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "level-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final HashSet<Integer> queued = new HashSet<>();
+
+    private LevelPrefetcher() {
+    }
+
+    /**
+     * @return the prefetcher shared by all views
+     */
+    public static LevelPrefetcher shared() {
+        return shared;
+    }
+
+    /**
+     * Reads a level into the LevelCache in the background. A level that is already waiting to be read is not queued twice.
+     * @param no number of the level
+     * @param listener told about the size of the level once it is read, not at all if it can't be read; may be null
+     */
+    public void prefetch(int no, Listener listener) {
+        synchronized (queued) {
+            if (!queued.add(no))
+                return;
+        }
+        executor.execute(() -> {
+            synchronized (queued) {
+                queued.remove(no);
+            }
+            LevelTemplate template = LevelCache.shared().get("Level" + no + ".txt");
+            if (template != null && template.isValid() && listener != null)
+                listener.levelReady(no, template.height, template.width);
+        });
+    }
+}
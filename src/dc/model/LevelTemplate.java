@@ -0,0 +1,160 @@
+package dc.model;
+
+import dc.util.Type;
+
+/**
+ * A level file parsed once, in the state the level starts in.
+ * A template never changes after it is built. The tiles that can't change during play (walls, passages,
+ * goals, gaps, locks, keys, switches and openers) are created once and shared by every level that is built
+ * from it; movables and forcefields are only remembered by their starting cell, every level has its own.
+ * LevelCache keeps the templates in memory, so a level is read from disk only the first time it is needed.
+ */
+final class LevelTemplate {
+    final String name;
+    final int height, width;
+    private final char[] glyphs;
+    private final Tile[][] floor;
+
+    // starting cells (row * width + col) in the order of the file
+    final int[] players, boxes, guards, blueFields, redFields;
+
+    LevelTemplate(String name, LevelLoader file) {
+        this.name = name;
+        height = file.getHeight();
+        width = file.getWidth();
+        glyphs = new char[height * width];
+        floor = new Tile[height][width];
+        int[] count = new int[5];
+        int[][] cells = new int[5][height * width];
+        for (int p = 0; p < height; p++) {
+            int length = file.getLineLength(p);
+            for (int i = 0; i < width; i++) {
+                char c = i < length ? file.charAt(p, i) : ' ';
+                int cell = p * width + i;
+                glyphs[cell] = c;
+                floor[p][i] = floorTile(c, p, i);
+                int kind = startKind(c);
+                if (kind >= 0)
+                    cells[kind][count[kind]++] = cell;
+            }
+        }
+        players = copyOf(cells[0], count[0]);
+        boxes = copyOf(cells[1], count[1]);
+        guards = copyOf(cells[2], count[2]);
+        blueFields = copyOf(cells[3], count[3]);
+        redFields = copyOf(cells[4], count[4]);
+    }
+
+    /**
+     * A map smaller than 4 x 4 can't be played.
+     * @return true if the map is big enough
+     */
+    boolean isValid() {
+        return height >= 4 && width >= 4;
+    }
+
+    /**
+     * Returns the character of the textfile at a cell, lines that are too short are filled up with ' '.
+     * @param cell row * width + col
+     * @return character
+     */
+    char glyphAt(int cell) {
+        return glyphs[cell];
+    }
+
+    /**
+     * Returns the tile that lies under whatever stands on a cell at the start.
+     * Null for forcefields, which every level makes itself, and for unknown characters.
+     * @param row row
+     * @param col collum
+     * @return shared tile, must not be changed
+     */
+    Tile floorAt(int row, int col) {
+        return floor[row][col];
+    }
+
+    /**
+     * Copies a row of the starting map, without movables and forcefields, into a map.
+     */
+    void copyRow(int row, Tile[] into) {
+        System.arraycopy(floor[row], 0, into, 0, width);
+    }
+
+    /**
+     * Hashes the map, so a replay can tell whether it was recorded on the same level as the one on disk.
+     * Lines that are too short count as filled up with ' ', so only the playable content matters.
+     * @return 64 bit FNV-1a hash of the size and the characters of the map
+     */
+    long contentHash() {
+        long h = 0xCBF29CE484222325L;
+        h = (h ^ height) * 0x100000001B3L;
+        h = (h ^ width) * 0x100000001B3L;
+        for (char c : glyphs)
+            h = (h ^ c) * 0x100000001B3L;
+        return h;
+    }
+
+    private static Tile floorTile(char c, int p, int i) {
+        switch (c) {
+            case ' ':
+            case '$':
+            case '@':
+            case 'N':
+            case 'O':
+            case 'S':
+            case 'W':
+                return new EmptyPassage(p, i);
+            case '#':
+                return new Wall(p, i);
+            case '.':
+            case '*':
+                return new PlayerGoal(p, i);
+            case '!':
+                return new Gap(p, i);
+            case 'R':
+                return new SwitchDirection(p, i, Type.RIGHT);
+            case 'L':
+                return new SwitchDirection(p, i, Type.LEFT);
+            case 'x':
+                return new ForceFieldOpener(p, i, Type.BLUE);
+            case 'y':
+                return new ForceFieldOpener(p, i, Type.RED);
+            case 'z':
+                return new Key(p, i);
+            case 'Z':
+                return new Lock(p, i);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return 0 for the player, 1 for boxes, 2 for guards, 3 for blue and 4 for red forcefields, -1 for the rest
+     */
+    private static int startKind(char c) {
+        switch (c) {
+            case '@':
+                return 0;
+            case '$':
+            case '*':
+                return 1;
+            case 'N':
+            case 'O':
+            case 'S':
+            case 'W':
+                return 2;
+            case 'X':
+                return 3;
+            case 'Y':
+                return 4;
+            default:
+                return -1;
+        }
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+}
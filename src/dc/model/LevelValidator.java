@@ -0,0 +1,262 @@
+package dc.model;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Checks every level file ("Level" number ".txt") of a directory without playing it.
+ * The files are split up on a fork/join pool, so a large level pack is checked on all cores.
+ * A level is valid if it has exactly one player, a goal the player can walk to when boxes, locks, gaps and
+ * forcefields are ignored, no unknown characters (guards are 'N', 'O', 'S' and 'W'), an opener for every
+ * forcefield color and the other way round.
+ * Fewer keys than locks is only a warning, since a level can often be solved without opening every lock.
+ * The report has one JSON object per line and level.
+ */
+public final class LevelValidator {
+    // how many files one task checks itself instead of splitting them further
+    private static final int FILES_PER_TASK = 64;
+    private static final String GLYPHS = " #$@.*!NOSWRLXYxyzZ";
+
+    /**
+     * What was found out about one level file.
+     */
+    public static final class Result {
+        public final int level;
+        public final String file;
+        public final String[] problems;
+        public final String[] warnings;
+
+        Result(int level, String file, String[] problems, String[] warnings) {
+            this.level = level;
+            this.file = file;
+            this.problems = problems;
+            this.warnings = warnings;
+        }
+
+        public boolean isValid() {
+            return problems.length == 0;
+        }
+    }
+
+    private LevelValidator() {
+    }
+
+    /**
+     * Checks all level files of a directory, as many at once as the common pool has threads.
+     * @param directory the directory
+     * @return one result per level file, ordered by level number
+     * @throws IOException if the directory can't be listed
+     */
+    public static Result[] validate(Path directory) throws IOException {
+        ArrayList<Path> list = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "Level*.txt")) {
+            for (Path file : files)
+                if (LevelCatalog.levelNumber(file.getFileName().toString()) >= 0)
+                    list.add(file);
+        }
+        Path[] files = list.toArray(new Path[0]);
+        Arrays.sort(files, Comparator.comparingInt(file -> LevelCatalog.levelNumber(file.getFileName().toString())));
+        Result[] results = new Result[files.length];
+        ForkJoinPool.commonPool().invoke(new Check(files, results, 0, files.length));
+        return results;
+    }
+
+    /**
+     * Checks a single level file.
+     * @param file the file
+     * @return the result
+     */
+    public static Result validateFile(Path file) {
+        String name = file.getFileName().toString();
+        ArrayList<String> warnings = new ArrayList<>();
+        String[] problems = check(LevelLoader.read(file), warnings);
+        return new Result(LevelCatalog.levelNumber(name), name, problems, warnings.toArray(new String[0]));
+    }
+
+    /**
+     * Checks the files from one index to another, splitting the range as long as it is large.
+     */
+    private static class Check extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Path[] files;
+        private final Result[] results;
+        private final int from, to;
+
+        Check(Path[] files, Result[] results, int from, int to) {
+            this.files = files;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute() {
+            if (to - from <= FILES_PER_TASK) {
+                for (int i = from; i < to; i++)
+                    results[i] = validateFile(files[i]);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Check(files, results, from, middle), new Check(files, results, middle, to));
+            }
+        }
+    }
+
+    /**
+     * Finds the problems of a loaded level.
+     * @param file the loaded file, null if it couldn't be read
+     * @param warnings gets the things that look wrong but don't make the level unplayable
+     * @return the problems, empty if there are none
+     */
+    static String[] check(LevelLoader file, ArrayList<String> warnings) {
+        ArrayList<String> problems = new ArrayList<>();
+        if (file == null) {
+            problems.add("file can't be read");
+            return problems.toArray(new String[0]);
+        }
+        int height = file.getHeight(), width = file.getWidth();
+        if (height < 4 || width < 4) {
+            problems.add("map is smaller than 4 x 4");
+            return problems.toArray(new String[0]);
+        }
+        char[] map = new char[height * width];
+        int[] count = new int[128];
+        int player = -1;
+        StringBuilder unknown = new StringBuilder();
+        for (int p = 0; p < height; p++)
+            for (int i = 0; i < width; i++) {
+                char c = i < file.getLineLength(p) ? file.charAt(p, i) : ' ';
+                map[p * width + i] = c;
+                if (GLYPHS.indexOf(c) < 0) {
+                    if (unknown.indexOf(String.valueOf(c)) < 0) {         // only the first of every character
+                        unknown.append(c);
+                        problems.add("unknown character '" + c + "' at row " + p + ", collum " + i);
+                    }
+                } else
+                    count[c]++;
+                if (c == '@' && player < 0)
+                    player = p * width + i;
+            }
+
+        if (count['@'] != 1)
+            problems.add(count['@'] == 0 ? "no player" : count['@'] + " players");
+        if (count['.'] + count['*'] == 0)
+            problems.add("no goal");
+        else if (player >= 0 && !goalReachable(map, width, player))
+            problems.add("no goal can be reached");
+        pair(problems, count, 'X', 'x', "blue");
+        pair(problems, count, 'Y', 'y', "red");
+        if (count['Z'] > count['z'])
+            warnings.add(count['Z'] + " locks but only " + count['z'] + " keys");
+        return problems.toArray(new String[0]);
+    }
+
+    private static void pair(ArrayList<String> problems, int[] count, char field, char opener, String color) {
+        if (count[field] > 0 && count[opener] == 0)
+            problems.add(color + " forcefield without opener");
+        if (count[opener] > 0 && count[field] == 0)
+            problems.add(color + " opener without forcefield");
+    }
+
+    /**
+     * Searches breadth first from the player for a goal. Only walls block the way, the map ends at its border.
+     */
+    private static boolean goalReachable(char[] map, int width, int start) {
+        boolean[] seen = new boolean[map.length];
+        int[] queue = new int[map.length];
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        seen[start] = true;
+        while (head < tail) {
+            int cell = queue[head++];
+            if (map[cell] == '.' || map[cell] == '*')
+                return true;
+            int col = cell % width;
+            int[] next = {cell - width, cell + width, col > 0 ? cell - 1 : -1, col < width - 1 ? cell + 1 : -1};
+            for (int n : next)
+                if (n >= 0 && n < map.length && !seen[n] && map[n] != '#') {
+                    seen[n] = true;
+                    queue[tail++] = n;
+                }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the report, one JSON object per line:
+     * {"level":9,"file":"Level9.txt","valid":false,"problems":["no goal"],"warnings":[]}
+     * @param results the results
+     * @param out where to write to
+     */
+    public static void writeReport(Result[] results, Writer out) {
+        PrintWriter writer = new PrintWriter(out);
+        for (Result result : results) {
+            StringBuilder b = new StringBuilder();
+            b.append("{\"level\":").append(result.level);
+            b.append(",\"file\":");
+            quote(b, result.file);
+            b.append(",\"valid\":").append(result.isValid());
+            b.append(",\"problems\":");
+            quote(b, result.problems);
+            b.append(",\"warnings\":");
+            quote(b, result.warnings);
+            b.append('}');
+            writer.println(b);
+        }
+        writer.flush();
+    }
+
+    private static void quote(StringBuilder b, String[] texts) {
+        b.append('[');
+        for (int i = 0; i < texts.length; i++) {
+            if (i > 0)
+                b.append(',');
+            quote(b, texts[i]);
+        }
+        b.append(']');
+    }
+
+    static void quote(StringBuilder b, String text) {
+        b.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\')
+                b.append('\\').append(c);
+            else if (c < ' ')
+                b.append(String.format("\\u%04x", (int) c));
+            else
+                b.append(c);
+        }
+        b.append('"');
+    }
+
+    /**
+     * Checks a directory and writes the report to a file or to the console.
+     * @param args the directory, "." if missing, and the file for the report
+     */
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        Result[] results = validate(Paths.get(args.length > 0 ? args[0] : "."));
+        if (args.length > 1) {
+            try (Writer out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                writeReport(results, out);
+            }
+        } else {
+            writeReport(results, new PrintWriter(System.out));
+        }
+        int invalid = 0;
+        for (Result result : results)
+            if (!result.isValid())
+                invalid++;
+        System.err.printf("%d levels checked, %d invalid, %.1f ms%n", results.length, invalid, (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -10,4 +10,8 @@ class Lock extends Tile {
     Lock(int x, int y) {
         super(x, y);
     }
+
+    public TileKind getKind() {
+        return TileKind.LOCK;
+    }
 }
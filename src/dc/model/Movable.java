@@ -10,7 +10,7 @@ import dc.util.Type;
 abstract class Movable extends Tile {
     Level thisLevel;
     Tile standsOn;
-    private boolean movedThisTurn;
+    private int movedIn;                    // the turn it last moved in
 
     /**
      * Creates a movable object.
@@ -21,7 +21,6 @@ abstract class Movable extends Tile {
         super(x, y);
         thisLevel = lvl;
         standsOn = new EmptyPassage(x, y);
-        movedThisTurn = false;
     }
 
     /**
@@ -74,18 +73,91 @@ abstract class Movable extends Tile {
         }
     }
 
+    // what happens when a movable object tries to move onto a tile
+    private static final byte NOTHING = 0;
+    private static final byte STEP = 1;                 // moves there
+    private static final byte STEP_AND_COLLECT = 2;     // player moves there and checks for goal, opener and key
+    private static final byte STEP_AND_SCREEN = 3;      // guard moves there and screens
+    private static final byte UNLOCK = 4;
+    private static final byte NO_KEY = 5;
+    private static final byte STOP = 6;                 // box doesn't move
+    private static final byte TURN_BACK = 7;            // guard turns 180° and tries again
+    private static final byte TURN = 8;                 // guard turns 180°
+    private static final byte FIELD_CLOSED = 9;
+    private static final byte HIT_WALL = 10;
+    private static final byte PUSH = 11;
+    private static final byte GUARD_PUSH = 12;
+    private static final byte BOX_HITS_BOX = 13;
+    private static final byte GUARD_HITS_GUARD = 14;
+    private static final byte LUCKY = 15;
+    private static final byte FALL = 16;
+    private static final byte FILL_GAP = 17;
+    private static final byte CATCH = 18;
+
+    // two more collums than there are kinds, for forcefields that are open and for unknown tiles
+    private static final int OPEN_FORCE_FIELD = TileKind.values().length;
+    private static final int UNKNOWN = OPEN_FORCE_FIELD + 1;        // a character the loader didn't know, it blocks
+    private static final byte[][] INTERACTIONS = new byte[TileKind.values().length][UNKNOWN + 1];
+
+    static {
+        TileKind[] passages = {TileKind.EMPTY_PASSAGE, TileKind.PLAYER_GOAL, TileKind.BOX_IN_GAP, TileKind.KEY,
+                TileKind.OPEN_LOCK, TileKind.SWITCH_DIRECTION, TileKind.FORCE_FIELD_OPENER};
+        for (TileKind passage : passages) {
+            interaction(TileKind.PLAYER, passage, STEP_AND_COLLECT);
+            interaction(TileKind.GUARD, passage, STEP_AND_SCREEN);
+            interaction(TileKind.BOX, passage, STEP);
+        }
+        interaction(TileKind.PLAYER, TileKind.LOCK, UNLOCK);
+        interaction(TileKind.GUARD, TileKind.LOCK, TURN_BACK);
+        interaction(TileKind.BOX, TileKind.LOCK, STOP);
+
+        interaction(TileKind.PLAYER, TileKind.FORCE_FIELD, FIELD_CLOSED);
+        interaction(TileKind.GUARD, TileKind.FORCE_FIELD, TURN_BACK);
+        interaction(TileKind.BOX, TileKind.FORCE_FIELD, STOP);
+        for (TileKind mover : new TileKind[]{TileKind.PLAYER, TileKind.GUARD, TileKind.BOX})
+            INTERACTIONS[mover.ordinal()][OPEN_FORCE_FIELD] = STEP;     // no screening or collecting on a forcefield
+
+        interaction(TileKind.PLAYER, TileKind.WALL, HIT_WALL);
+        interaction(TileKind.GUARD, TileKind.WALL, TURN_BACK);
+        interaction(TileKind.BOX, TileKind.WALL, STOP);
+
+        for (TileKind box : new TileKind[]{TileKind.BOX, TileKind.BOX_OVER_GOAL}) {
+            interaction(TileKind.PLAYER, box, PUSH);
+            interaction(TileKind.GUARD, box, GUARD_PUSH);
+            interaction(TileKind.BOX, box, BOX_HITS_BOX);
+        }
+
+        interaction(TileKind.PLAYER, TileKind.GUARD, LUCKY);
+        interaction(TileKind.GUARD, TileKind.GUARD, GUARD_HITS_GUARD);
+        interaction(TileKind.BOX, TileKind.GUARD, STOP);
+
+        interaction(TileKind.PLAYER, TileKind.GAP, FALL);
+        interaction(TileKind.GUARD, TileKind.GAP, TURN);
+        interaction(TileKind.BOX, TileKind.GAP, FILL_GAP);
+
+        interaction(TileKind.GUARD, TileKind.PLAYER, CATCH);
+        interaction(TileKind.BOX, TileKind.PLAYER, STOP);               // a guard pushes it against the player
+        INTERACTIONS[TileKind.BOX.ordinal()][UNKNOWN] = STOP;
+
+        INTERACTIONS[TileKind.BOX_OVER_GOAL.ordinal()] = INTERACTIONS[TileKind.BOX.ordinal()];
+    }
+
+    private static void interaction(TileKind mover, TileKind target, byte action) {
+        INTERACTIONS[mover.ordinal()][target.ordinal()] = action;
+    }
+
     /**
      * Tries to move a movable object.
      * Checks if it already moved this turn. Saves the starting coordinates. Sets the direction in case it is a player.
-     * Always checks what kind of tile is in front. then checks what kind of object itself is. Depending on the object in front
-     * it either moves there, doesn't move there, or tells the object in front to move first.
+     * Looks up in the interaction table what happens when this kind of object meets the kind of tile in front.
+     * Depending on that it either moves there, doesn't move there, or tells the object in front to move first.
      * @param start where the movable object starts out
      * @param field where it wants to move to
      * @param d direction
      */
     void move(Level level, Movable start, Tile field, Type d) {
 
-        if (movedThisTurn) {
+        if (isMovedThisTurn()) {
             return;
         }
         int startX = start.getPosX();
@@ -95,33 +167,35 @@ abstract class Movable extends Tile {
             this.type = d;
         }
 
+        int collum;
+        if (field == null) {
+            collum = UNKNOWN;
+        } else {
+            TileKind target = field.getKind();
+            collum = target == TileKind.FORCE_FIELD && !((ForceField) field).isActive() ? OPEN_FORCE_FIELD : target.ordinal();
+        }
 
-        if (field instanceof Passage) {                                     // Passage ahead
-            thisLevel.map[getPosX()][getPosY()] = standsOn;
-            standsOn = field;
-            thisLevel.map[field.getPosX()][field.getPosY()] = this;
-            setPosX(field.getPosX());
-            setPosY(field.getPosY());
-            setMovedThisTurn(true);
-            level.fireTileUpdate(startX, startY);
-            level.fireTileUpdate(field.getPosX(), field.getPosY());
-
+        switch (INTERACTIONS[getKind().ordinal()][collum]) {
+            case STEP:
+                step(level, field, startX, startY);
+                break;
 
-            if (this instanceof Guard) {                                    // Guard moves onto a passage
+            case STEP_AND_SCREEN:                                           // Guard moves onto a passage
+                step(level, field, startX, startY);
                 ((Guard) this).screen();
-                return;
-            }
-            if (this instanceof Player) {                                   // Check if on goal
+                break;
 
-                if (standsOn instanceof PlayerGoal) {
+            case STEP_AND_COLLECT:
+                step(level, field, startX, startY);
+                if (standsOn instanceof PlayerGoal) {                        // Check if on goal
                     level.handelLevelComplete();
                     return;
                 }
                 if (this.standsOn instanceof ForceFieldOpener) {              // Check if on forcefield opener
                     if (standsOn.getType() == Type.BLUE) {
-                        thisLevel.blueForceFields.openForceField(level);
+                        thisLevel.openForceFields(Type.BLUE);
                     } else {
-                        thisLevel.redForceFields.openForceField(level);
+                        thisLevel.openForceFields(Type.RED);
                     }
                     standsOn = new EmptyPassage(this.getPosX(), this.getPosY());
                     return;
@@ -130,169 +204,135 @@ abstract class Movable extends Tile {
                     ((Player) this).setKeys(((Player) this).getKeys() + 1);
                     standsOn = new EmptyPassage(this.getPosX(), this.getPosY());
                 }
-            }
-            return;
-        }
+                break;
 
-        if (field instanceof Lock) {
-            if (this instanceof Player) {                                     //Player meets lock
+            case UNLOCK:                                                      //Player meets lock
                 if (((Player) this).getKeys() > 0) {
-                    thisLevel.map[field.getPosX()][field.getPosY()] = new OpenLock(field.getPosX(), field.getPosY());
+                    thisLevel.setTile(field.getPosX(), field.getPosY(), new OpenLock(field.getPosX(), field.getPosY()));
+                    thisLevel.groundChanged(field.getPosX(), field.getPosY());
                     ((Player) this).setKeys(((Player) this).getKeys() - 1);
                     this.move(level, type);
                 } else {
                     level.updateStatusLine("You don't have enough keys");
                 }
-            }
-
-            if (this instanceof Guard) {                                      //Guard meets lock
-                ((Guard) this).turn180(level);
-                move(level, this.type);
-            }
-
-            if (this instanceof Box) {                                        //Box meets lock
-                this.setMovedThisTurn(true);
-            }
-        }
-
-        //Forcefield ahead
-        if (field instanceof ForceField) {                                    //Forcefield ist still on
-            if (((ForceField) field).isActive()) {
-                if (this instanceof Player) {                                 //Player runs into closed forcefield
-                    level.updateStatusLine("You cant move through yet.");
-                }
-                if (this instanceof Box) {                                    //Box runs into closed forcefield
-                    this.setMovedThisTurn(true);
-                }
-                if (this instanceof Guard) {                                  //Guard runs into closed forcefield
-                    ((Guard) this).turn180(level);
-                    move(level, this.type);
-                }
+                break;
 
+            case FIELD_CLOSED:                                                //Player runs into closed forcefield
+                level.updateStatusLine("You cant move through yet.");
+                break;
 
-            } else {
-                thisLevel.map[getPosX()][getPosY()] = standsOn;             //Forcefield is open
-                standsOn = field;
-                thisLevel.map[field.getPosX()][field.getPosY()] = this;
-                setPosX(field.getPosX());
-                setPosY(field.getPosY());
-                setMovedThisTurn(true);
+            case HIT_WALL:                                                    //Player runs into wall
+                level.updateStatusLine("You hit a Wall!");
                 level.fireTileUpdate(startX, startY);
-                level.fireTileUpdate(field.getPosX(), field.getPosY());
+                break;
 
-            }
-        }
+            case STOP:                                                        //Box runs into something
+                this.setMovedThisTurn(true);
+                break;
 
-        //Wall ahead
-        if (field instanceof Wall) {
-            if (this instanceof Player) {                                   //Player runs into wall
-                level.updateStatusLine("You hit a Wall!");
-                level.fireTileUpdate(startX, startY);
-            }
-            if (this instanceof Guard) {                                    //Guard runs into wall
+            case TURN_BACK:                                                   //Guard runs into lock, forcefield or wall
                 ((Guard) this).turn180(level);
                 this.move(level, this.type);
-            }
-            if (this instanceof Box) {                                        //Box runs into wall
-                this.setMovedThisTurn(true);
-            }
-            return;
-        }
-        //Box ahead
-        if (field instanceof Box) {
+                break;
+
+            case TURN:                                                        //Guard runs into gap
+                ((Guard) this).turn180(level);
+                break;
 
-            if (start instanceof Guard) {                                   //Guard pushes a box
+            case GUARD_PUSH:                                                  //Guard pushes a box
                 if (((Box) field).isMovedThisTurn()) {
                     ((Guard) this).turn180(level);
                 } else {
                     ((Box) field).move(level, type);
                     ((Guard) this).move(level, this.type);
-                    if (!this.movedThisTurn) {
+                    if (!this.isMovedThisTurn()) {
                         ((Guard) this).turn180(level);
                     }
                 }
-                return;
-            }
+                break;
 
-            if (start instanceof Player) {                                    //Player pushes a box
+            case PUSH:                                                        //Player pushes a box
                 if (((Box) field).isMovedThisTurn()) {
                     level.updateStatusLine("You can't move this box");
                 } else {
                     ((Box) field).move(level, type);
                     ((Player) start).move(level, type);
                 }
-            }
-            //Box pushes a box
-            if (start instanceof Box) {
-                level.updateStatusLine("You cant move through yet.");
-                ((Box) this).setMovedThisTurn(true);
-            }
-        }
-
-        //Guard ahead
-        if (field instanceof Guard) {
+                break;
 
-            if (this instanceof Guard) {                                    //Guard hits guard
-                if (this instanceof Guard) {
-                    if (((Guard) field).isTurned()) {
-                        ((Guard) this).turn180(level);
-                        ((Guard) this).setTurned(true);
-                        //move(level, ((Guard) field).getType());
-                    } else {
-                        ((Guard) this).setTurned(true);
-                        if (!((Guard) field).isMovedThisTurn())
-                            //((Guard)this).turn180(level);
-                            ((Guard) field).move(level, ((Guard) field).getType());
-                    }
-                    return;
-                }
+            case BOX_HITS_BOX:                                                //Box pushes a box
+                level.updateStatusLine("You cant move through yet.");
+                this.setMovedThisTurn(true);
+                break;
 
-                }
-                if (this instanceof Player) {                                     //Player hits guard
-                    // The player won't move, but unless the
-                    // guard faces the player he won't get caught.
-                    level.updateStatusLine("You got lucky he didn't see you");
-                }
-                if (this instanceof Box) {                                        //Box hits guard
-                    this.setMovedThisTurn(true);
-                    //The box won't be able to move
-                }
-                return;
+            case GUARD_HITS_GUARD:                                            //Guard hits guard
+                thisLevel.guardScheduler.blocked((Guard) this, (Guard) field);
+                break;
 
-        }
+            case LUCKY:                                                       //Player hits guard
+                // The player won't move, but unless the
+                // guard faces the player he won't get caught.
+                level.updateStatusLine("You got lucky he didn't see you");
+                break;
 
-        //Gap ahead
-        if (field instanceof Gap) {
-            if (this instanceof Player) {                                   //Player runs into gap
+            case FALL:                                                        //Player runs into gap
                 standsOn = field;
-                thisLevel.map[field.getPosX()][field.getPosY()] = this;
+                thisLevel.setTile(field.getPosX(), field.getPosY(), this);
                 setPosX(field.getPosX());
                 setPosY(field.getPosY());
                 level.handleLevelLost();
-            }
-            if (this instanceof Guard) {                                    //Guard runs into gap
-                ((Guard) this).turn180(level);
-                return;
-            }
-            if (this instanceof Box) {                              //Box runs into gap
-                thisLevel.map[field.getPosX()][field.getPosY()] = new BoxInGap(field.getPosX(), field.getPosY());
-                thisLevel.map[start.getPosX()][start.getPosY()] = standsOn;
+                break;
+
+            case FILL_GAP:                                                    //Box runs into gap
+                thisLevel.history.touch(this);
+                thisLevel.setTile(field.getPosX(), field.getPosY(), new BoxInGap(field.getPosX(), field.getPosY()));
+                thisLevel.groundChanged(field.getPosX(), field.getPosY());
+                thisLevel.setTile(start.getPosX(), start.getPosY(), standsOn);
+                thisLevel.groundChanged(start.getPosX(), start.getPosY());
                 level.fireTileUpdate(field.getPosX(), field.getPosY());
                 standsOn = field;
-                field = this;
                 setMovedThisTurn(true);
+                break;
 
-            }
-            return;
+            case CATCH:                                                       //Guard runs into player
+                level.handleLevelLost();
+                break;
+
+            default:
         }
-        //player ahead
-        if (this instanceof Guard) {
+    }
 
-            if (field instanceof Player) {                                  //Guard runs into player
-                level.handleLevelLost();
-            }
+    /**
+     * Moves onto the tile in front and tells the views, and for a box the distance fields and the undo history.
+     */
+    private void step(Level level, Tile field, int startX, int startY) {
+        if (this instanceof Box)
+            thisLevel.history.touch(this);
+        thisLevel.setTile(getPosX(), getPosY(), standsOn);
+        standsOn = field;
+        thisLevel.setTile(field.getPosX(), field.getPosY(), this);
+        setPosX(field.getPosX());
+        setPosY(field.getPosY());
+        setMovedThisTurn(true);
+        if (this instanceof Box) {
+            thisLevel.groundChanged(startX, startY);
+            thisLevel.groundChanged(field.getPosX(), field.getPosY());
         }
+        level.fireTileUpdate(startX, startY);
+        level.fireTileUpdate(field.getPosX(), field.getPosY());
+    }
 
+    /**
+     * Puts the movable back onto a cell, as if the level had just been loaded.
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @param floor the tile it stands on there
+     */
+    void respawn(int x, int y, Tile floor) {
+        setPosX(x);
+        setPosY(y);
+        standsOn = floor;
+        movedIn = 0;
     }
 
     protected Level getThisLevel() {
@@ -314,11 +354,11 @@ abstract class Movable extends Tile {
     }
 
     protected boolean isMovedThisTurn() {
-        return movedThisTurn;
+        return movedIn == thisLevel.currentTurn;
     }
 
     protected void setMovedThisTurn(boolean movedThisTurn) {
-        this.movedThisTurn = movedThisTurn;
+        movedIn = movedThisTurn ? thisLevel.currentTurn : 0;
     }
 
 
@@ -334,6 +374,16 @@ class Player extends Movable {
         super(x, y, lvl);
     }
 
+    void respawn(int x, int y, Tile floor) {
+        super.respawn(x, y, floor);
+        keys = 0;
+        type = null;
+    }
+
+    public TileKind getKind() {
+        return TileKind.PLAYER;
+    }
+
     protected int getKeys() {
         return keys;
     }
@@ -350,6 +400,10 @@ class Box extends Movable {
     Box(int x, int y, Level lvl) {
         super(x, y, lvl);
     }
+
+    public TileKind getKind() {
+        return TileKind.BOX;
+    }
 }
 
 /**
@@ -357,7 +411,12 @@ class Box extends Movable {
  * Guard has a direction and can turn in all directions. Always checks if a player is in his vision.
  */
 class Guard extends Movable {
-    boolean turned = false;
+    int scheduledIn;                        // the turn it last had its move in
+    // line of sight, kept up to date by SightLines; sight < 0 means it has to be looked at again
+    int sight = -1, sightX, sightY;
+    Type sightDir;
+    int sightSlot = -1, sightLine;
+    boolean sightSideways;
 
     /**
      *
@@ -367,6 +426,18 @@ class Guard extends Movable {
      */
     Guard(int x, int y, char d, Level lvl) {
         super(x, y, lvl);
+        face(d);
+    }
+
+    public TileKind getKind() {
+        return TileKind.GUARD;
+    }
+
+    /**
+     * Sets the direction from the character of the textfile.
+     * @param d 'N', 'O', 'S' or 'W'
+     */
+    void face(char d) {
         switch (d) {
             case 'N':
                 type = Type.NORTH;
@@ -383,6 +454,13 @@ class Guard extends Movable {
         }
     }
 
+    void respawn(int x, int y, Tile floor) {
+        super.respawn(x, y, floor);
+        scheduledIn = 0;
+        sight = -1;
+        sightSlot = -1;
+    }
+
     /**
      * Checks if the guard stands on a switchDirection-tile before calling for the move method in Movable.
      */
@@ -400,6 +478,14 @@ class Guard extends Movable {
         }
     }
 
+    /**
+     * Moves on in the current direction without looking at a SwitchDirection again.
+     * Used when the guard had to wait for the guard in front of it.
+     */
+    void moveAhead(Level level) {
+        super.move(level, this.type);
+    }
+
     /**
      * Turns the guard right.
      */
@@ -462,66 +548,17 @@ class Guard extends Movable {
                 break;
 
         }
-        this.setTurned(true);
         level.fireTileUpdate(getPosX(), getPosY());
         screen();
     }
 
     /**
-     * starts screening
-     */
-    void screen() {                      // sets up the first screening
-        screen(1);
-    }
-
-    /**
-     * Handles which tile has to be screened.
-     * @param i how many tiles in front the guard has to screen.
-     */
-    private void screen(int i) {                        // finds the field that is to be screened
-
-        switch (type) {
-            case SOUTH:
-                screen(thisLevel.map[getPosX() + i][getPosY()], i);
-                break;
-            case NORTH:
-                screen(thisLevel.map[getPosX() - i][getPosY()], i);
-                break;
-            case EAST:
-                screen(thisLevel.map[getPosX()][getPosY() + i], i);
-                break;
-            case WEST:
-                screen(thisLevel.map[getPosX()][getPosY() - i], i);
-                break;
-            default:
-        }
-    }
-
-    /**
-     * Screens a specific field and handles when it catches a player
-     * @param Field the tile that is supposed to be screened
-     * @param i how many tiles have been screened already
+     * Screens for the player and handles when the guard catches him.
+     * Looks up the line of sight of the guard instead of walking along it.
      */
-    private void screen(Tile Field, int i) {    // screens a specific field
-        if (Field instanceof Player) {
+    void screen() {
+        if (thisLevel.sightLines.seesPlayer(this))
             thisLevel.handleLevelLost();
-            return;
-        }
-        if (Field instanceof Passage || Field instanceof Gap) {
-            screen(i + 1);
-        }
-        if (Field instanceof Wall || Field instanceof Box || Field instanceof Guard) {
-            return;
-        }
-
-    }
-
-    boolean isTurned() {
-        return turned;
-    }
-
-    void setTurned(boolean turned) {
-        this.turned = turned;
     }
 
 }
@@ -535,5 +572,9 @@ class BoxOverGoal extends Box {
         PlayerGoal Goal = new PlayerGoal(x, y);
         standsOn = Goal;
     }
+
+    public TileKind getKind() {
+        return TileKind.BOX_OVER_GOAL;
+    }
 }
 
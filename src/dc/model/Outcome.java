@@ -0,0 +1,8 @@
+package dc.model;
+
+/**
+ * State of a level that is being played.
+ */
+public enum Outcome {
+    RUNNING, WON, LOST
+}
@@ -0,0 +1,77 @@
+package dc.model;
+
+/**
+ * A set of packed level states.
+ * All states are stored back to back in one long array and found again through an open addressing
+ * table of ids, so a visited state costs a few longs and no objects.
+ */
+final class PackedStateSet {
+    private final StateCodec codec;
+    private final int words;
+    private long[] states;
+    private int[] table;
+    private int size;
+
+    PackedStateSet(StateCodec codec) {
+        this.codec = codec;
+        words = codec.words();
+        states = new long[1024 * words];
+        table = new int[2048];
+    }
+
+    /**
+     * Adds a state if it is not in the set yet.
+     * @param state array with the packed state
+     * @param offset where the state starts
+     * @return the id of the new state, or -1 if it was already in the set
+     */
+    int add(long[] state, int offset) {
+        if (size * 2 >= table.length)
+            rehash();
+        int mask = table.length - 1;
+        int slot = codec.hash(state, offset) & mask;
+        while (table[slot] != 0) {
+            if (matches(table[slot] - 1, state, offset))
+                return -1;
+            slot = (slot + 1) & mask;
+        }
+        if ((size + 1) * words > states.length) {
+            long[] bigger = new long[states.length * 2];
+            System.arraycopy(states, 0, bigger, 0, states.length);
+            states = bigger;
+        }
+        System.arraycopy(state, offset, states, size * words, words);
+        table[slot] = ++size;
+        return size - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the array all states are stored in, the state with id i starts at i * words
+     */
+    long[] states() {
+        return states;
+    }
+
+    private boolean matches(int id, long[] state, int offset) {
+        int start = id * words;
+        for (int i = 0; i < words; i++)
+            if (states[start + i] != state[offset + i])
+                return false;
+        return true;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = codec.hash(states, id * words) & mask;
+            while (table[slot] != 0)
+                slot = (slot + 1) & mask;
+            table[slot] = id + 1;
+        }
+    }
+}
@@ -20,6 +20,10 @@ class OpenLock extends Passage{
     OpenLock (int x, int y){
         super(x, y);
     }
+
+    public TileKind getKind() {
+        return TileKind.OPEN_LOCK;
+    }
 }
 
 /**
@@ -30,6 +34,10 @@ class EmptyPassage extends Passage {
     EmptyPassage(int x, int y) {
         super(x, y);
     }
+
+    public TileKind getKind() {
+        return TileKind.EMPTY_PASSAGE;
+    }
 }
 
 /**
@@ -39,6 +47,10 @@ class BoxInGap extends Passage {
     BoxInGap(int x, int y) {
         super(x, y);
     }
+
+    public TileKind getKind() {
+        return TileKind.BOX_IN_GAP;
+    }
 }
 
 /**
@@ -48,6 +60,10 @@ class PlayerGoal extends Passage {
     PlayerGoal(int x, int y) {
         super(x, y);
     }
+
+    public TileKind getKind() {
+        return TileKind.PLAYER_GOAL;
+    }
 }
 
 /**
@@ -60,6 +76,10 @@ class SwitchDirection extends Passage {
         super(x, y);
         type = direction;
     }
+
+    public TileKind getKind() {
+        return TileKind.SWITCH_DIRECTION;
+    }
 }
 
 /**
@@ -69,6 +89,10 @@ class Key extends Passage {
     Key(int x, int y) {
         super(x, y);
     }
+
+    public TileKind getKind() {
+        return TileKind.KEY;
+    }
 }
 
 /**
@@ -80,6 +104,10 @@ class ForceFieldOpener extends Passage {
         super(x, y);
         type = color;
     }
+
+    public TileKind getKind() {
+        return TileKind.FORCE_FIELD_OPENER;
+    }
 }
 
 
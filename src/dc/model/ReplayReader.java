@@ -0,0 +1,210 @@
+package dc.model;
+
+import dc.controller.Movement;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a replay written by ReplayWriter.
+ * The movements can be read one after the other with next, block by block, in buffers that are used again for
+ * every block. seek jumps to any turn: it reads the offset of the block from the index at the end of the file,
+ * unpacks the keyframe of that block into a level and plays the turns of the block up to the turn, so it never
+ * plays more than keyframeInterval turns. A replay that doesn't start at the start of the level starts in the
+ * keyframe of its first block; seek(0, level) puts a level there.
+ */
+public class ReplayReader implements Closeable {
+    private static final Movement[] MOVES = Movement.values();
+
+    private final SeekableByteChannel channel;
+    private final int levelNumber, keyframeInterval, turns;
+    private final long levelHash;
+    // where the blocks start, the last one ends where the index starts
+    private final long[] blockOffsets;
+    private final long index;
+    private final long[] keyframe;
+    private final ByteBuffer block;
+    private StateCodec codec;
+    // the block that is read now and where in it
+    private int blockIndex = -1, turnsInBlock, turnInBlock;
+    private int last = -1, repeats;
+    private boolean counting, moreDigits;
+    private int bits, bitCount;
+
+    /**
+     * Opens a replay file.
+     * @param file the replay
+     * @return the reader, positioned before the first turn
+     * @throws IOException if the file can't be read or isn't a replay
+     */
+    public static ReplayReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new ReplayReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the header and the index of a replay.
+     * @param channel the replay, it is closed with the reader
+     * @throws IOException if it can't be read or isn't a replay
+     */
+    public ReplayReader(SeekableByteChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(ReplayWriter.HEADER_BYTES);
+        read(0, header);
+        if (header.getInt() != ReplayWriter.MAGIC || header.getInt() != ReplayWriter.VERSION)
+            throw new IOException("not a replay of this version");
+        levelNumber = header.getInt();
+        levelHash = header.getLong();
+        keyframeInterval = header.getInt();
+        keyframe = new long[header.getInt()];
+
+        ByteBuffer trailer = ByteBuffer.allocate(ReplayWriter.TRAILER_BYTES);
+        read(channel.size() - ReplayWriter.TRAILER_BYTES, trailer);
+        index = trailer.getLong();
+        turns = trailer.getInt();
+        if (trailer.getInt() != ReplayWriter.TRAILER_MAGIC)
+            throw new IOException("the replay is not complete");
+        ByteBuffer offsets = ByteBuffer.allocate((int) (channel.size() - ReplayWriter.TRAILER_BYTES - index));
+        read(index, offsets);
+        blockOffsets = new long[offsets.getInt()];
+        for (int i = 0; i < blockOffsets.length; i++)
+            blockOffsets[i] = offsets.getLong();
+        block = ByteBuffer.allocate(ReplayWriter.BLOCK_HEADER_BYTES + keyframe.length * 8
+                + ReplayWriter.maxPayload(keyframeInterval));
+    }
+
+    public int getLevelNumber() {
+        return levelNumber;
+    }
+
+    /**
+     * @return the number of turns in the replay
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /**
+     * @return true if the level file on disk is the one the replay was recorded on
+     */
+    public boolean matchesLevel() {
+        LevelTemplate template = LevelCache.shared().get("Level" + levelNumber + ".txt");
+        return template != null && template.contentHash() == levelHash;
+    }
+
+    /**
+     * Reads the next movement.
+     * @return the movement of the next turn, null after the last turn
+     * @throws IOException if the replay can't be read
+     */
+    public Movement next() throws IOException {
+        if (turnInBlock == turnsInBlock) {
+            if (blockIndex + 1 >= blockOffsets.length)
+                return null;
+            readBlock(blockIndex + 1);
+        }
+        turnInBlock++;
+        if (repeats == 0 && moreDigits) {
+            repeats = slot();
+            moreDigits = repeats == 3;                      // 3 more, and another digit follows
+        }
+        if (repeats > 0) {
+            repeats--;
+            return MOVES[last];
+        }
+        int move = slot();
+        if (counting) {                                     // the run is over, this movement differs
+            counting = false;
+        } else if (move == last) {
+            counting = true;                                // a pair, the count of repeats comes next
+            moreDigits = true;
+        }
+        last = move;
+        return MOVES[move];
+    }
+
+    /**
+     * Puts a level into the state before a turn and positions the reader there, so next returns that turn.
+     * @param turn number of turns played before, 0 to getTurns()
+     * @param level a CompactLevel of the same level number, it is overwritten
+     * @throws IOException if the replay can't be read
+     */
+    public void seek(int turn, CompactLevel level) throws IOException {
+        if (turn < 0 || turn > turns)
+            throw new IndexOutOfBoundsException("turn " + turn + " of " + turns);
+        if (codec == null)
+            codec = new StateCodec(new CompactLevel(levelNumber), true);
+        if (blockOffsets.length == 0) {
+            level.resetLevel();
+            return;
+        }
+        int index = Math.min(turn / keyframeInterval, blockOffsets.length - 1);
+        readBlock(index);
+        codec.unpack(keyframe, 0, level);
+        for (int i = index * keyframeInterval; i < turn; i++)
+            level.turn(CompactLevel.MOVEMENTS[next().ordinal()]);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads a block with its keyframe and starts unpacking its movements.
+     */
+    private void readBlock(int index) throws IOException {
+        long start = blockOffsets[index];
+        long end = index + 1 < blockOffsets.length ? blockOffsets[index + 1] : this.index;
+        block.clear();
+        block.limit((int) (end - start));
+        read(start, block);
+        turnsInBlock = block.getInt();
+        block.getInt();                                     // length of the movements
+        for (int i = 0; i < keyframe.length; i++)
+            keyframe[i] = block.getLong();
+        blockIndex = index;
+        turnInBlock = 0;
+        last = -1;
+        repeats = 0;
+        counting = false;
+        moreDigits = false;
+        bitCount = 0;
+    }
+
+    private int slot() {
+        if (bitCount == 0) {
+            bits = block.get() & 0xFF;
+            bitCount = 8;
+        }
+        int slot = bits & 3;
+        bits >>>= 2;
+        bitCount -= 2;
+        return slot;
+    }
+
+    /**
+     * Fills a buffer from a position of the channel and flips it.
+     */
+    private void read(long position, ByteBuffer into) throws IOException {
+        channel.position(position);
+        while (into.hasRemaining())
+            if (channel.read(into) < 0)
+                throw new EOFException("the replay ends early");
+        into.flip();
+    }
+}
@@ -0,0 +1,348 @@
+package dc.model;
+
+import dc.controller.Movement;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Checks submitted solutions by playing them: does the tape of movements win its level?
+ * A job is a line "level movements", the movements as letters U, D, L and R (for example "3 RRUUL"), or a
+ * replay file written by ReplayWriter. Jobs are split up on a fork/join pool, whose threads steal the jobs of
+ * busy ones, so short and long tapes mix well. Every thread keeps one CompactLevel per level number and puts
+ * it back into its starting state for the next job by copying arrays, so a level file is never parsed again.
+ * A kept level is only used while its template is the one in the LevelCache; if the file has changed, the
+ * level is loaded again.
+ * A job is WON if the level is won with the last movement, LOST if it is lost, UNFINISHED if the tape ends
+ * before, and INVALID if it can't be played: unknown level, unknown movement, movements after the level was
+ * won, or a replay of a level file that has changed since.
+ * The report has one JSON object per line and job.
+ */
+public final class ReplayVerifier {
+    // how many jobs one task plays itself instead of splitting them further; tapes differ a lot in length
+    private static final int JOBS_PER_TASK = 8;
+    // how many lines are read before they are played, so a stream of jobs of any length fits in memory
+    private static final int BATCH = 8192;
+    private static final ThreadLocal<HashMap<Integer, Kept>> LEVELS = ThreadLocal.withInitial(HashMap::new);
+
+    public enum Verdict {
+        WON, LOST, UNFINISHED, INVALID
+    }
+
+    /**
+     * What playing one job showed.
+     */
+    public static final class Result {
+        public final String source;
+        public final int level;
+        public final Verdict verdict;
+        public final int turns;
+        public final String reason;
+
+        Result(String source, int level, Verdict verdict, int turns, String reason) {
+            this.source = source;
+            this.level = level;
+            this.verdict = verdict;
+            this.turns = turns;
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * A level of a thread and the template it was loaded from.
+     */
+    private static final class Kept {
+        final LevelTemplate template;
+        final CompactLevel level;
+
+        Kept(LevelTemplate template, CompactLevel level) {
+            this.template = template;
+            this.level = level;
+        }
+    }
+
+    private ReplayVerifier() {
+    }
+
+    /**
+     * Plays a tape on the calling thread.
+     * @param source where the job came from, for the report
+     * @param level number of the level
+     * @param tape the movements, one per turn
+     * @return the result
+     */
+    public static Result verify(String source, int level, Movement[] tape) {
+        byte[] moves = new byte[tape.length];
+        for (int i = 0; i < tape.length; i++)
+            moves[i] = CompactLevel.MOVEMENTS[tape[i].ordinal()];
+        return play(source, level, moves);
+    }
+
+    /**
+     * Plays one job line on the calling thread.
+     * @param source where the line came from, for the report
+     * @param line "level movements"
+     * @return the result
+     */
+    public static Result verifyLine(String source, String line) {
+        line = line.trim();
+        int space = line.indexOf(' ');
+        String number = space < 0 ? line : line.substring(0, space);
+        String tape = space < 0 ? "" : line.substring(space + 1).trim();
+        int level;
+        try {
+            level = Integer.parseInt(number);
+        } catch (NumberFormatException e) {
+            return new Result(source, -1, Verdict.INVALID, 0, "'" + number + "' is not a level number");
+        }
+        byte[] moves = new byte[tape.length()];
+        for (int i = 0; i < moves.length; i++) {
+            switch (tape.charAt(i)) {
+                case 'U':
+                case 'u':
+                    moves[i] = CompactLevel.NORTH;
+                    break;
+                case 'D':
+                case 'd':
+                    moves[i] = CompactLevel.SOUTH;
+                    break;
+                case 'L':
+                case 'l':
+                    moves[i] = CompactLevel.WEST;
+                    break;
+                case 'R':
+                case 'r':
+                    moves[i] = CompactLevel.EAST;
+                    break;
+                default:
+                    return new Result(source, level, Verdict.INVALID, 0,
+                            "unknown movement '" + tape.charAt(i) + "' at " + i);
+            }
+        }
+        return play(source, level, moves);
+    }
+
+    /**
+     * Plays a replay file on the calling thread.
+     * @param file the replay
+     * @return the result
+     */
+    public static Result verifyReplay(Path file) {
+        String source = file.toString();
+        try (ReplayReader reader = ReplayReader.open(file)) {
+            if (!reader.matchesLevel())
+                return new Result(source, reader.getLevelNumber(), Verdict.INVALID, 0,
+                        "the level file has changed since the replay was recorded");
+            byte[] moves = new byte[reader.getTurns()];
+            for (int i = 0; i < moves.length; i++)
+                moves[i] = CompactLevel.MOVEMENTS[reader.next().ordinal()];
+            int no = reader.getLevelNumber();
+            CompactLevel level = levelOfThisThread(no);
+            if (level == null)
+                return new Result(source, no, Verdict.INVALID, 0, "Level" + no + ".txt can't be played");
+            reader.seek(0, level);                          // a replay that starts after an undo starts in its keyframe
+            return play(source, level, moves);
+        } catch (IOException e) {
+            return new Result(source, -1, Verdict.INVALID, 0, "can't be read: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Plays job lines on the common pool.
+     * @param sources where each line came from, for the report
+     * @param lines the lines
+     * @param count how many lines to play
+     * @return one result per line, in the same order
+     */
+    public static Result[] verifyLines(String[] sources, String[] lines, int count) {
+        Result[] results = new Result[count];
+        ForkJoinPool.commonPool().invoke(new Split(0, count, i -> results[i] = verifyLine(sources[i], lines[i])));
+        return results;
+    }
+
+    /**
+     * Plays replay files on the common pool.
+     * @param files the replays
+     * @return one result per file, in the same order
+     */
+    public static Result[] verifyReplays(Path[] files) {
+        Result[] results = new Result[files.length];
+        ForkJoinPool.commonPool().invoke(new Split(0, files.length, i -> results[i] = verifyReplay(files[i])));
+        return results;
+    }
+
+    /**
+     * Plays the moves on the level of this thread, reset to its start.
+     */
+    private static Result play(String source, int no, byte[] moves) {
+        CompactLevel level = levelOfThisThread(no);
+        if (level == null)
+            return new Result(source, no, Verdict.INVALID, 0, "Level" + no + ".txt can't be played");
+        return play(source, level, moves);
+    }
+
+    /**
+     * Returns the level of this thread, reset to its start.
+     * The level is loaded again if its template in the LevelCache isn't the one it was loaded from.
+     * @return the level, null if it can't be played
+     */
+    private static CompactLevel levelOfThisThread(int no) {
+        HashMap<Integer, Kept> levels = LEVELS.get();
+        LevelTemplate template = LevelCache.shared().get("Level" + no + ".txt");
+        if (template == null) {
+            levels.remove(no);
+            return null;
+        }
+        Kept kept = levels.get(no);
+        CompactLevel level;
+        if (kept == null || kept.template != template) {
+            level = new CompactLevel(no);
+            levels.put(no, new Kept(template, level));
+        } else {
+            level = kept.level;
+            level.resetLevel();
+        }
+        return level.getWidth() == 0 ? null : level;
+    }
+
+    /**
+     * Plays the moves on a level from the state it is in.
+     */
+    private static Result play(String source, CompactLevel level, byte[] moves) {
+        int no = level.getLevelNumber();
+        int turns = 0;
+        while (turns < moves.length && level.outcome == Outcome.RUNNING)
+            level.turn(moves[turns++]);
+        switch (level.outcome) {
+            case WON:
+                if (turns < moves.length)
+                    return new Result(source, no, Verdict.INVALID, turns,
+                            "won after " + turns + " turns, but the tape has " + moves.length);
+                return new Result(source, no, Verdict.WON, turns, "");
+            case LOST:
+                return new Result(source, no, Verdict.LOST, turns, "");
+            default:
+                return new Result(source, no, Verdict.UNFINISHED, turns, "");
+        }
+    }
+
+    /**
+     * Does the work for the indices from one to another, splitting the range as long as it is large.
+     */
+    private static class Split extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from, to;
+        private final IntConsumer work;
+
+        Split(int from, int to, IntConsumer work) {
+            this.from = from;
+            this.to = to;
+            this.work = work;
+        }
+
+        protected void compute() {
+            if (to - from <= JOBS_PER_TASK) {
+                for (int i = from; i < to; i++)
+                    work.accept(i);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Split(from, middle, work), new Split(middle, to, work));
+            }
+        }
+    }
+
+    /**
+     * Writes results, one JSON object per line:
+     * {"source":"jobs.txt:1","level":3,"verdict":"WON","turns":57,"reason":""}
+     * @param results the results
+     * @param out where to write to
+     */
+    public static void writeReport(Result[] results, Writer out) {
+        PrintWriter writer = new PrintWriter(out);
+        for (Result result : results) {
+            StringBuilder b = new StringBuilder();
+            b.append("{\"source\":");
+            LevelValidator.quote(b, result.source);
+            b.append(",\"level\":").append(result.level);
+            b.append(",\"verdict\":\"").append(result.verdict).append('"');
+            b.append(",\"turns\":").append(result.turns);
+            b.append(",\"reason\":");
+            LevelValidator.quote(b, result.reason);
+            b.append('}');
+            writer.println(b);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Verifies jobs and writes the report to the console, then how many replays per second were played.
+     * @param args files with job lines and replay files (ending in ".replay"); the lines come from the console if
+     *             there are none. Empty lines and lines starting with '#' are skipped.
+     */
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        PrintWriter out = new PrintWriter(System.out);
+        long[] totals = new long[Verdict.values().length + 1];      // the verdicts, then the turns
+        ArrayList<Path> replays = new ArrayList<>();
+        ArrayList<String> files = new ArrayList<>();
+        for (String arg : args)
+            if (arg.endsWith(".replay"))
+                replays.add(Paths.get(arg));
+            else
+                files.add(arg);
+        if (!replays.isEmpty())
+            report(verifyReplays(replays.toArray(new Path[0])), out, totals);
+        if (args.length == 0)
+            files.add("-");
+        String[] sources = new String[BATCH], lines = new String[BATCH];
+        for (String file : files) {
+            try (BufferedReader in = "-".equals(file)
+                    ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                    : Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+                int number = 0, count;
+                do {
+                    count = 0;
+                    String line;
+                    while (count < BATCH && (line = in.readLine()) != null) {
+                        number++;
+                        if (line.trim().isEmpty() || line.startsWith("#"))
+                            continue;
+                        sources[count] = file + ":" + number;
+                        lines[count++] = line;
+                    }
+                    report(verifyLines(sources, lines, count), out, totals);
+                } while (count == BATCH);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int threads = ForkJoinPool.commonPool().getParallelism();
+        long jobs = 0;
+        for (Verdict verdict : Verdict.values())
+            jobs += totals[verdict.ordinal()];
+        System.err.printf("%d replays: %d won, %d lost, %d unfinished, %d invalid, %d turns%n", jobs,
+                totals[Verdict.WON.ordinal()], totals[Verdict.LOST.ordinal()],
+                totals[Verdict.UNFINISHED.ordinal()], totals[Verdict.INVALID.ordinal()], totals[totals.length - 1]);
+        System.err.printf("%.1f s, %.0f replays/s, %.0f replays/s per core (%d threads), %.0f turns/s%n", seconds,
+                jobs / seconds, jobs / seconds / threads, threads, totals[totals.length - 1] / seconds);
+    }
+
+    private static void report(Result[] results, PrintWriter out, long[] totals) {
+        writeReport(results, out);
+        for (Result result : results) {
+            totals[result.verdict.ordinal()]++;
+            totals[totals.length - 1] += result.turns;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package dc.model;
+
+import dc.controller.Movement;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Writes the movements of a game into a replay, while they are played.
+ * A replay starts with a header (magic, version, level number, hash of the level file, keyframe interval, size of
+ * a keyframe). Then follow blocks of up to keyframeInterval turns; every block starts with the exact state of the
+ * level before its first turn, packed by StateCodec, so a reader can start at any block without playing the ones
+ * before. Usually a replay starts at the start of the level, but it can start in any state of it, which is then the
+ * keyframe of its first block. The movements of a block are packed into 2 bits each, 4 to a byte; two equal movements in a row are
+ * followed by a count of further repeats in 2 bit digits (0 to 2, or 3 and another digit), so a long run costs
+ * about 2 bits per 3 turns. At the end come the file offsets of all blocks and a trailer that points to them.
+ * To pack the keyframes, the writer plays the movements on its own CompactLevel. The blocks are built in buffers
+ * that are used again for every block, nothing is allocated per movement.
+ */
+public class ReplayWriter implements Closeable {
+    static final int MAGIC = 0x44435250;                    // "DCRP"
+    static final int TRAILER_MAGIC = 0x44435249;            // "DCRI"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 4 + 4;
+    static final int BLOCK_HEADER_BYTES = 4 + 4;
+    static final int TRAILER_BYTES = 8 + 4 + 4;
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 1024;
+
+    private final WritableByteChannel channel;
+    private final int keyframeInterval;
+    private final CompactLevel level;
+    private final StateCodec codec;
+    private final long[] keyframe;
+    private final ByteBuffer block;
+    // where the movements of a block start in the buffer, the header and the keyframe go in front of them
+    private final int front;
+    private long[] blockOffsets = new long[16];
+    private int blocks;
+    private long position;
+    private int turns, turnsInBlock;
+    // packing of the movements of the current block
+    private int bits, bitCount, last = -1, repeats;
+    private boolean counting;
+    private boolean closed;
+
+    /**
+     * Starts a replay of a level in its starting state and writes the header.
+     * @param channel where the replay goes, it is closed with the writer
+     * @param levelNumber the number of the level that is played
+     * @param keyframeInterval how many turns a block has, a reader plays at most this many turns to get to any turn
+     * @throws IOException if the header can't be written
+     * @throws IllegalArgumentException if the level can't be read or the interval is less than 1
+     */
+    public ReplayWriter(WritableByteChannel channel, int levelNumber, int keyframeInterval) throws IOException {
+        this(channel, levelNumber, null, keyframeInterval);
+    }
+
+    /**
+     * Starts a replay of a level in the state it is in now and writes the header.
+     * @param channel where the replay goes, it is closed with the writer
+     * @param start the level in the state before the first turn, it is copied
+     * @param keyframeInterval how many turns a block has, a reader plays at most this many turns to get to any turn
+     * @throws IOException if the header can't be written
+     * @throws IllegalArgumentException if the level can't be read or the interval is less than 1
+     */
+    public ReplayWriter(WritableByteChannel channel, CompactLevel start, int keyframeInterval) throws IOException {
+        this(channel, start.getLevelNumber(), start, keyframeInterval);
+    }
+
+    private ReplayWriter(WritableByteChannel channel, int levelNumber, CompactLevel start, int keyframeInterval)
+            throws IOException {
+        if (keyframeInterval < 1)
+            throw new IllegalArgumentException("keyframeInterval must be at least 1");
+        LevelTemplate template = LevelCache.shared().get("Level" + levelNumber + ".txt");
+        if (template == null || !template.isValid())
+            throw new IllegalArgumentException("Level" + levelNumber + ".txt can't be played");
+        this.channel = channel;
+        this.keyframeInterval = keyframeInterval;
+        level = start != null ? start.copy() : new CompactLevel(levelNumber);
+        // keyframes are packed against the start of the level, like the reader unpacks them
+        codec = new StateCodec(start != null ? new CompactLevel(levelNumber) : level, true);
+        keyframe = new long[codec.words()];
+        front = BLOCK_HEADER_BYTES + keyframe.length * 8;
+        block = ByteBuffer.allocate(Math.max(HEADER_BYTES + 8 + TRAILER_BYTES, front + maxPayload(keyframeInterval)));
+        block.putInt(MAGIC).putInt(VERSION).putInt(levelNumber).putLong(template.contentHash())
+                .putInt(keyframeInterval).putInt(keyframe.length);
+        flip();
+        block.position(front);
+    }
+
+    /**
+     * @return the most bytes the movements of a block can take: 3 bits per turn for pairs, plus the last count
+     */
+    static int maxPayload(int turns) {
+        return (turns * 3 + 2) / 8 + 2;
+    }
+
+    /**
+     * Adds one turn to the replay.
+     * @param direction the movement of the player in that turn
+     * @throws IOException if a full block can't be written
+     */
+    public void record(Movement direction) throws IOException {
+        if (closed)
+            throw new IllegalStateException("the replay is closed");
+        if (turnsInBlock == 0)
+            codec.pack(level, keyframe, 0);
+        int move = direction.ordinal();
+        if (counting) {
+            if (move == last) {
+                if (++repeats == 3) {
+                    put(3);
+                    repeats = 0;
+                }
+            } else {
+                put(repeats);
+                counting = false;
+                put(move);
+                last = move;
+            }
+        } else {
+            put(move);
+            counting = move == last;
+            repeats = 0;
+            last = move;
+        }
+        level.turn(CompactLevel.MOVEMENTS[move]);
+        turns++;
+        if (++turnsInBlock == keyframeInterval)
+            writeBlock();
+    }
+
+    /**
+     * @return the number of turns recorded so far
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    /**
+     * Writes the last block, the offsets of the blocks and the trailer, then closes the channel.
+     * @throws IOException if writing fails
+     */
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            if (turnsInBlock > 0)
+                writeBlock();
+            long index = position;
+            block.clear();
+            block.putInt(blocks);
+            for (int i = 0; i < blocks; i++) {
+                if (block.remaining() < 8 + TRAILER_BYTES)
+                    flip();
+                block.putLong(blockOffsets[i]);
+            }
+            block.putLong(index).putInt(turns).putInt(TRAILER_MAGIC);
+            flip();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void put(int slot) {
+        bits |= slot << bitCount;
+        bitCount += 2;
+        if (bitCount == 8) {
+            block.put((byte) bits);
+            bits = 0;
+            bitCount = 0;
+        }
+    }
+
+    /**
+     * Writes the keyframe and the movements of the current block.
+     */
+    private void writeBlock() throws IOException {
+        if (counting)
+            put(repeats);                                   // the count of a run that the block ends in
+        if (bitCount > 0)
+            block.put((byte) bits);
+        int end = block.position();
+        block.position(0);
+        block.putInt(turnsInBlock).putInt(end - front);
+        for (long word : keyframe)
+            block.putLong(word);
+        block.position(end);
+        if (blocks == blockOffsets.length)
+            blockOffsets = Arrays.copyOf(blockOffsets, blocks * 2);
+        blockOffsets[blocks++] = position;
+        flip();
+        block.position(front);
+        turnsInBlock = 0;
+        bits = 0;
+        bitCount = 0;
+        last = -1;
+        counting = false;
+    }
+
+    /**
+     * Writes what is in the buffer and empties it.
+     */
+    private void flip() throws IOException {
+        block.flip();
+        position += block.remaining();
+        while (block.hasRemaining())
+            channel.write(block);
+        block.clear();
+    }
+}
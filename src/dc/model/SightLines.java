@@ -0,0 +1,150 @@
+package dc.model;
+
+import dc.util.Type;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of what every guard can see.
+ * Each guard remembers the straight line of tiles in front of it that it can see through (passages and gaps)
+ * and the first tile that blocks its view. Whether a guard sees the player is then a single look at that tile.
+ * The line is only walked again when the guard turns, jumps, or one of the tiles on it changes; a guard that
+ * walks straight on just loses the first tile of its line.
+ * To find the guards that look at a changed tile quickly, guards looking sideways are listed per row and guards
+ * looking up or down are listed per collum.
+ */
+final class SightLines {
+    private final Level level;
+    private final Guard[][] rows, cols;
+    private final int[] rowCount, colCount;
+
+    SightLines(Level level) {
+        this.level = level;
+        rows = new Guard[level.getHeight()][];
+        cols = new Guard[level.getWidth()][];
+        rowCount = new int[level.getHeight()];
+        colCount = new int[level.getWidth()];
+    }
+
+    /**
+     * Forgets all guards, for when the level starts again.
+     */
+    void clear() {
+        Arrays.fill(rowCount, 0);
+        Arrays.fill(colCount, 0);
+    }
+
+    /**
+     * Has to be called whenever a tile of the map is replaced.
+     * Every guard whose line of sight contains that tile has to look again.
+     * @param row row
+     * @param col collum
+     * @param tile the new tile
+     */
+    void tileChanged(int row, int col, Tile tile) {
+        Guard[] guards = rows[row];
+        for (int i = 0; i < rowCount[row]; i++)
+            forget(guards[i], row, col, tile);
+        guards = cols[col];
+        for (int i = 0; i < colCount[col]; i++)
+            forget(guards[i], row, col, tile);
+    }
+
+    /**
+     * Checks if a guard sees the player.
+     * @param guard the guard
+     * @return true if the first tile that blocks its view is the player
+     */
+    boolean seesPlayer(Guard guard) {
+        update(guard);
+        int dx = dx(guard.sightDir), dy = dy(guard.sightDir);
+        int x = guard.sightX + dx * (guard.sight + 1);
+        int y = guard.sightY + dy * (guard.sight + 1);
+        return inside(x, y) && level.map[x][y] instanceof Player;
+    }
+
+    private void forget(Guard guard, int row, int col, Tile tile) {
+        if (guard.sight < 0)
+            return;
+        int dx = dx(guard.sightDir), dy = dy(guard.sightDir);
+        int k = dx != 0 ? (row - guard.sightX) * dx : (col - guard.sightY) * dy;
+        if (k < 1 || k > guard.sight + 1)
+            return;
+        if (tile == guard && k == 1)                        // the guard walks along its own line
+            return;
+        guard.sight = -1;
+    }
+
+    /**
+     * Brings the line of sight of a guard up to date.
+     */
+    private void update(Guard guard) {
+        if (guard.sight >= 0 && guard.sightDir == guard.type) {
+            if (guard.sightX == guard.getPosX() && guard.sightY == guard.getPosY())
+                return;
+            if (guard.sight >= 1 && guard.sightX + dx(guard.type) == guard.getPosX()
+                    && guard.sightY + dy(guard.type) == guard.getPosY()) {
+                guard.sightX = guard.getPosX();
+                guard.sightY = guard.getPosY();
+                guard.sight--;
+                return;
+            }
+        }
+        unregister(guard);
+        guard.sightX = guard.getPosX();
+        guard.sightY = guard.getPosY();
+        guard.sightDir = guard.type;
+        int dx = dx(guard.type), dy = dy(guard.type);
+        int sight = 0;
+        int x = guard.sightX + dx, y = guard.sightY + dy;
+        while ((dx != 0 || dy != 0) && inside(x, y) && (level.map[x][y] instanceof Passage || level.map[x][y] instanceof Gap)) {
+            sight++;
+            x += dx;
+            y += dy;
+        }
+        guard.sight = sight;
+        register(guard);
+    }
+
+    private void register(Guard guard) {
+        boolean sideways = dy(guard.sightDir) != 0;
+        int line = sideways ? guard.sightX : guard.sightY;
+        Guard[][] lines = sideways ? rows : cols;
+        int[] counts = sideways ? rowCount : colCount;
+        if (lines[line] == null)
+            lines[line] = new Guard[4];
+        else if (counts[line] == lines[line].length) {
+            Guard[] bigger = new Guard[counts[line] * 2];
+            System.arraycopy(lines[line], 0, bigger, 0, counts[line]);
+            lines[line] = bigger;
+        }
+        guard.sightSlot = counts[line];
+        guard.sightSideways = sideways;
+        guard.sightLine = line;
+        lines[line][counts[line]++] = guard;
+    }
+
+    private void unregister(Guard guard) {
+        if (guard.sightSlot < 0)
+            return;
+        Guard[] line = guard.sightSideways ? rows[guard.sightLine] : cols[guard.sightLine];
+        int[] counts = guard.sightSideways ? rowCount : colCount;
+        int last = --counts[guard.sightLine];
+        line[guard.sightSlot] = line[last];
+        line[guard.sightSlot].sightSlot = guard.sightSlot;
+        line[last] = null;
+        guard.sightSlot = -1;
+    }
+
+    private boolean inside(int x, int y) {
+        return x >= 0 && y >= 0 && x < level.getHeight() && y < level.getWidth();
+    }
+
+    private static int dx(Type d) {
+        return d == Type.SOUTH ? 1 : d == Type.NORTH ? -1 : 0;
+    }
+
+    private static int dy(Type d) {
+        return d == Type.EAST ? 1 : d == Type.WEST ? -1 : 0;
+    }
+}
@@ -0,0 +1,56 @@
+package dc.model;
+
+import dc.controller.Movement;
+
+/**
+ * Plays a level without any views.
+ * Runs a tape of movements on a CompactLevel until the level is won, lost or the tape ends.
+ * Nothing on the way is allocated: there are no view callbacks and no status line texts.
+ */
+public class Simulation {
+    private final CompactLevel level;
+    private int turns;
+
+    /**
+     * @param level the level to play, it is played from its current state
+     */
+    public Simulation(CompactLevel level) {
+        this.level = level;
+    }
+
+    /**
+     * Plays the whole tape.
+     * @param tape the movements of the player, one per turn
+     * @return the outcome after the last played turn
+     */
+    public Outcome run(Movement[] tape) {
+        return run(tape, tape.length);
+    }
+
+    /**
+     * Plays the tape until the level is won or lost, the tape ends or maxTurns turns have been played.
+     * @param tape the movements of the player, one per turn
+     * @param maxTurns the most turns to play
+     * @return the outcome, RUNNING if the level is neither won nor lost yet
+     */
+    public Outcome run(Movement[] tape, int maxTurns) {
+        int end = Math.min(tape.length, maxTurns);
+        turns = 0;
+        while (level.outcome == Outcome.RUNNING && turns < end) {
+            level.turn(CompactLevel.MOVEMENTS[tape[turns].ordinal()]);
+            turns++;
+        }
+        return level.outcome;
+    }
+
+    /**
+     * @return the number of turns played by the last run
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    public CompactLevel getLevel() {
+        return level;
+    }
+}
@@ -0,0 +1,156 @@
+package dc.model;
+
+import dc.controller.Movement;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the shortest winning sequence of movements for a level, or shows that there is none.
+ * Searches breadth first over packed states, so guards, boxes, gaps, keys, locks and forcefields are all
+ * part of the search. Every layer of the search is expanded in parallel, then merged into the set of
+ * visited states in a fixed order, so the result does not depend on the number of cores.
+ */
+public class Solver {
+    private static final Movement[] MOVES = Movement.values();
+    private static final int CHUNK = 256;
+
+    private final CompactLevel start;
+    private final StateCodec codec;
+    private final int words;
+    private int maxStates = 5000000;
+    private boolean complete;
+    private int visited;
+
+    /**
+     * @param level the level to solve, starting from its current state
+     */
+    public Solver(CompactLevel level) {
+        start = level.copy();
+        start.resetMovedThisTurn();
+        codec = new StateCodec(start);
+        words = codec.words();
+    }
+
+    /**
+     * Limits how many states are visited before the search gives up.
+     * @param maxStates the most states to visit
+     */
+    public void setMaxStates(int maxStates) {
+        this.maxStates = maxStates;
+    }
+
+    /**
+     * Searches for the shortest solution.
+     * @return the movements that win the level, or null if there are none or the search gave up
+     */
+    public Movement[] solve() {
+        complete = false;
+        visited = 0;
+        if (start.outcome != Outcome.RUNNING) {
+            complete = true;
+            return start.outcome == Outcome.WON ? new Movement[0] : null;
+        }
+        PackedStateSet set = new PackedStateSet(codec);
+        int[] parent = new int[1024];
+        byte[] move = new byte[1024];
+        long[] state = new long[words];
+        codec.pack(start, state, 0);
+        set.add(state, 0);
+        parent[0] = -1;
+
+        int from = 0, to = 1;
+        while (from < to) {
+            int count = to - from;
+            long[] next = new long[count * MOVES.length * words];
+            byte[] outcome = new byte[count * MOVES.length];
+            expand(set.states(), from, count, next, outcome);
+
+            for (int k = 0; k < outcome.length; k++)
+                if (outcome[k] == Outcome.WON.ordinal()) {
+                    visited = set.size();
+                    return path(parent, move, from + k / MOVES.length, (byte) (k % MOVES.length));
+                }
+
+            for (int k = 0; k < outcome.length; k++) {
+                if (outcome[k] != Outcome.RUNNING.ordinal())
+                    continue;
+                int id = set.add(next, k * words);
+                if (id < 0)
+                    continue;
+                if (id == parent.length) {
+                    parent = Arrays.copyOf(parent, id * 2);
+                    move = Arrays.copyOf(move, id * 2);
+                }
+                parent[id] = from + k / MOVES.length;
+                move[id] = (byte) (k % MOVES.length);
+                if (set.size() >= maxStates) {
+                    visited = set.size();
+                    return null;
+                }
+            }
+            from = to;
+            to = set.size();
+        }
+        visited = set.size();
+        complete = true;
+        return null;
+    }
+
+    /**
+     * @return true if the last search looked at every reachable state, so a null result means there is no solution
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return how many states the last search visited
+     */
+    public int getVisited() {
+        return visited;
+    }
+
+    /**
+     * Plays every movement from every state of the layer. Large layers are split into chunks that run in parallel,
+     * each with its own copy of the level.
+     * @param states all visited states
+     * @param from id of the first state of the layer
+     * @param count number of states in the layer
+     * @param next receives the packed successors, four per state
+     * @param outcome receives the outcome of each successor
+     */
+    private void expand(long[] states, int from, int count, long[] next, byte[] outcome) {
+        int chunks = (count + CHUNK - 1) / CHUNK;
+        IntStream range = IntStream.range(0, chunks);
+        if (chunks > 1)
+            range = range.parallel();
+        range.forEach(c -> {
+            CompactLevel level = start.copy();
+            StateCodec local = new StateCodec(start);
+            int end = Math.min(count, (c + 1) * CHUNK);
+            for (int s = c * CHUNK; s < end; s++) {
+                for (int m = 0; m < MOVES.length; m++) {
+                    local.unpack(states, (from + s) * words, level);
+                    level.turn(CompactLevel.MOVEMENTS[MOVES[m].ordinal()]);
+                    int k = s * MOVES.length + m;
+                    outcome[k] = (byte) level.outcome.ordinal();
+                    if (level.outcome == Outcome.RUNNING)
+                        local.pack(level, next, k * words);
+                }
+            }
+        });
+    }
+
+    private Movement[] path(int[] parent, byte[] move, int id, byte last) {
+        int length = 1;
+        for (int p = id; parent[p] >= 0; p = parent[p])
+            length++;
+        Movement[] path = new Movement[length];
+        path[--length] = MOVES[last];
+        for (int p = id; parent[p] >= 0; p = parent[p])
+            path[--length] = MOVES[move[p]];
+        complete = true;
+        return path;
+    }
+}
@@ -0,0 +1,207 @@
+package dc.model;
+
+import java.util.Arrays;
+
+/**
+ * Packs the state of a CompactLevel between two turns into a few longs and unpacks it again.
+ * Only what can change during play is stored: the player, keys, boxes, guards, the cells that can be
+ * used up or filled (gaps, locks, keys and forcefield openers) and which forcefield colors are open.
+ * Boxes are stored sorted by cell, so states that only differ in which box is where are the same.
+ * An exact codec keeps the boxes in their order and also stores the direction of the player and the outcome,
+ * so a level unpacked from it looks and plays exactly like the one that was packed; replays use it for keyframes.
+ */
+final class StateCodec {
+    private final byte[] baseCells;
+    private final int[] mutableCells;
+    private final int cellBits, boxBits, keyBits;
+    private final int boxes, guards;
+    private final int words;
+    private final int[] sortedBoxes;
+    private final boolean exact;
+
+    /**
+     * @param level the level whose states are packed, its current state is the start state
+     */
+    StateCodec(CompactLevel level) {
+        this(level, false);
+    }
+
+    /**
+     * @param level the level whose states are packed, its current state is the start state
+     * @param exact true to keep the order of the boxes, the direction of the player and the outcome
+     */
+    StateCodec(CompactLevel level, boolean exact) {
+        this.exact = exact;
+        baseCells = level.cells.clone();
+        int count = 0, keyCells = 0;
+        for (byte tile : baseCells)
+            if (isMutable(tile))
+                count++;
+        mutableCells = new int[count];
+        count = 0;
+        for (int cell = 0; cell < baseCells.length; cell++)
+            if (isMutable(baseCells[cell])) {
+                mutableCells[count++] = cell;
+                if (baseCells[cell] == CompactLevel.KEY)
+                    keyCells++;
+            }
+        boxes = level.numberOfBoxes;
+        guards = level.numberOfGuards;
+        cellBits = bitsFor(baseCells.length);
+        boxBits = bitsFor(baseCells.length + 1);
+        keyBits = bitsFor(level.keys + keyCells + 1);
+        int bits = cellBits + keyBits + boxes * boxBits + guards * (cellBits + 2) + mutableCells.length + 2;
+        if (exact)
+            bits += 3 + 2;                                  // direction of the player + 1, outcome
+        words = Math.max(1, (bits + 63) / 64);
+        sortedBoxes = new int[boxes];
+    }
+
+    /**
+     * @return how many longs a packed state takes
+     */
+    int words() {
+        return words;
+    }
+
+    /**
+     * Packs the state of a level. Not thread safe, every thread needs its own codec or its own copy.
+     * @param level level, between two turns
+     * @param out array for the packed state
+     * @param offset where to write the first long
+     */
+    void pack(CompactLevel level, long[] out, int offset) {
+        Arrays.fill(out, offset, offset + words, 0L);
+        int pos = 0;
+        pos = put(out, offset, pos, level.playerCell, cellBits);
+        pos = put(out, offset, pos, level.keys, keyBits);
+        System.arraycopy(level.boxCell, 0, sortedBoxes, 0, boxes);
+        if (!exact)
+            Arrays.sort(sortedBoxes);
+        for (int b = 0; b < boxes; b++)
+            pos = put(out, offset, pos, sortedBoxes[b] + 1, boxBits);
+        for (int g = 0; g < guards; g++) {
+            pos = put(out, offset, pos, level.guardCell[g], cellBits);
+            pos = put(out, offset, pos, level.guardDir[g], 2);
+        }
+        for (int cell : mutableCells)
+            pos = put(out, offset, pos, level.cells[cell] == baseCells[cell] ? 0 : 1, 1);
+        pos = put(out, offset, pos, level.blueOpen ? 1 : 0, 1);
+        pos = put(out, offset, pos, level.redOpen ? 1 : 0, 1);
+        if (exact) {
+            pos = put(out, offset, pos, level.playerDir + 1, 3);
+            put(out, offset, pos, level.outcome.ordinal(), 2);
+        }
+    }
+
+    /**
+     * Restores a packed state into a level of the same map.
+     * @param in array with the packed state
+     * @param offset where the first long is
+     * @param level level that is overwritten
+     */
+    void unpack(long[] in, int offset, CompactLevel level) {
+        System.arraycopy(baseCells, 0, level.cells, 0, baseCells.length);
+        Arrays.fill(level.occupant, CompactLevel.NOBODY);
+        int pos = 0;
+        level.playerCell = get(in, offset, pos, cellBits);
+        pos += cellBits;
+        level.keys = get(in, offset, pos, keyBits);
+        pos += keyBits;
+        for (int b = 0; b < boxes; b++) {
+            int cell = get(in, offset, pos, boxBits) - 1;
+            pos += boxBits;
+            level.boxCell[b] = cell;
+            if (!exact)
+                level.boxOverGoal[b] = false;
+            if (cell >= 0) {
+                level.occupant[cell] = CompactLevel.BOX;
+                level.occupantIndex[cell] = b;
+            }
+        }
+        for (int g = 0; g < guards; g++) {
+            int cell = get(in, offset, pos, cellBits);
+            pos += cellBits;
+            level.guardCell[g] = cell;
+            level.guardDir[g] = (byte) get(in, offset, pos, 2);
+            pos += 2;
+            level.occupant[cell] = CompactLevel.GUARD;
+            level.occupantIndex[cell] = g;
+        }
+        level.occupant[level.playerCell] = CompactLevel.PLAYER;
+        for (int cell : mutableCells) {
+            if (get(in, offset, pos, 1) == 1)
+                level.cells[cell] = usedUp(baseCells[cell]);
+            pos++;
+        }
+        level.blueOpen = get(in, offset, pos, 1) == 1;
+        level.redOpen = get(in, offset, pos + 1, 1) == 1;
+        level.outcome = Outcome.RUNNING;
+        if (exact) {
+            level.playerDir = (byte) (get(in, offset, pos + 2, 3) - 1);
+            level.outcome = Outcome.values()[get(in, offset, pos + 5, 2)];
+        }
+        level.resetMovedThisTurn();
+    }
+
+    /**
+     * @return a hash of a packed state
+     */
+    int hash(long[] in, int offset) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int i = offset; i < offset + words; i++) {
+            h ^= in[i];
+            h *= 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static boolean isMutable(byte tile) {
+        switch (tile) {
+            case CompactLevel.GAP:
+            case CompactLevel.LOCK:
+            case CompactLevel.KEY:
+            case CompactLevel.BLUE_OPENER:
+            case CompactLevel.RED_OPENER:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * What a mutable cell turns into once it has been used.
+     */
+    private static byte usedUp(byte tile) {
+        switch (tile) {
+            case CompactLevel.GAP:
+                return CompactLevel.BOX_IN_GAP;
+            case CompactLevel.LOCK:
+                return CompactLevel.OPEN_LOCK;
+            default:
+                return CompactLevel.EMPTY;
+        }
+    }
+
+    private static int bitsFor(int values) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(values - 1));
+    }
+
+    private static int put(long[] out, int offset, int pos, int value, int bits) {
+        long v = value & ((1L << bits) - 1);
+        int word = offset + (pos >>> 6), shift = pos & 63;
+        out[word] |= v << shift;
+        if (shift + bits > 64)
+            out[word + 1] |= v >>> (64 - shift);
+        return pos + bits;
+    }
+
+    private static int get(long[] in, int offset, int pos, int bits) {
+        int word = offset + (pos >>> 6), shift = pos & 63;
+        long v = in[word] >>> shift;
+        if (shift + bits > 64)
+            v |= in[word + 1] << (64 - shift);
+        return (int) (v & ((1L << bits) - 1));
+    }
+}
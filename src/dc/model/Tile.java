@@ -40,6 +40,12 @@ public abstract class Tile {
     }
 
 
+    /**
+     * Returns the kind of this tile.
+     * @return kind
+     */
+    public abstract TileKind getKind();
+
     public String getTileType() {
         String classType = this.getClass().toGenericString();
         int i = classType.lastIndexOf(".");
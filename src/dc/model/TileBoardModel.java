@@ -15,6 +15,11 @@ public interface TileBoardModel<T> {
 
     int getHeight();
 
+    /**
+     * @return the number of the level that is played
+     */
+    int getLevelNumber();
+
 
     T getBottomTileAt(int rowNr, int colNr);
 
@@ -33,6 +38,14 @@ public interface TileBoardModel<T> {
      */
     void handleClick(int row, int col);
 
+    /**
+     * Plays the next step of the walk a click started, one step per call, so the walk can be played one step per tick.
+     * @return true if there are steps left
+     */
+    default boolean walk() {
+        return false;
+    }
+
     /**
      * Reloads the level
      * Clears all lists of guards, boxes and forcefields and reloads the entire map from scratch. Then tells all views to update themselves.
@@ -45,5 +58,21 @@ public interface TileBoardModel<T> {
      * @param no the number of the level
      */
     void startNewLevel(int no);
+
+    /**
+     * Takes back the last turn.
+     * @return false if there is nothing to take back, or the model can't
+     */
+    default boolean undo() {
+        return false;
+    }
+
+    /**
+     * Plays the last turn that was taken back again.
+     * @return false if there is nothing to play again, or the model can't
+     */
+    default boolean redo() {
+        return false;
+    }
 }
 
@@ -0,0 +1,9 @@
+package dc.model;
+
+/**
+ * The kinds of tiles, so views can tell them apart without looking at their classes.
+ */
+public enum TileKind {
+    EMPTY_PASSAGE, WALL, PLAYER_GOAL, GAP, BOX_IN_GAP, KEY, LOCK, OPEN_LOCK, SWITCH_DIRECTION, FORCE_FIELD_OPENER,
+    FORCE_FIELD, PLAYER, BOX, BOX_OVER_GOAL, GUARD
+}
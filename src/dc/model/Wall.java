@@ -7,4 +7,8 @@ class Wall extends Tile{
     Wall(int x, int y){
         super(x, y);
     }
+
+    public TileKind getKind() {
+        return TileKind.WALL;
+    }
 }
@@ -0,0 +1,307 @@
+package dc.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Reads text from a file, the way In does, but every reader has its own state.
+ * So any number of threads can read files at the same time, and forgetting to close one reader doesn't
+ * affect any other. The file is read through a channel into a buffer and decoded with the default charset,
+ * like the FileReader of In. Methods and their results follow In: after every read done() tells if it worked.
+ */
+public final class TextReader implements Closeable {
+
+    /**
+     * End of file indicator returned by read() or peek() when no more characters can be read.
+     */
+    public static final char eof = In.eof;
+
+    private static final char empty = '\ufffe';
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ReadableByteChannel channel;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private boolean endOfInput, flushed;
+    private boolean done = true;        // true if recent operation was successful
+    private char buf = empty;           // character that was read but given back
+
+    private TextReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        decoder = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars.flip();
+    }
+
+    /**
+     * Opens a textfile.
+     * @param name name of the file
+     * @return the reader or null if the file can't be opened
+     */
+    public static TextReader open(String name) {
+        return open(Paths.get(name));
+    }
+
+    /**
+     * Opens a textfile.
+     * @param file the file
+     * @return the reader or null if the file can't be opened
+     */
+    public static TextReader open(Path file) {
+        try {
+            return new TextReader(Files.newByteChannel(file));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a raw character.
+     * If an attempt is made to read beyond the end of the file, eof is returned and done() yields false.
+     * @return the character
+     */
+    public char read() {
+        char c;
+        if (buf != empty) {
+            c = buf;
+            if (buf != eof)
+                buf = empty;
+        } else {
+            try {
+                c = chars.hasRemaining() || fill() ? chars.get() : eof;
+            } catch (IOException e) {
+                c = eof;
+            }
+            if (c == eof)
+                buf = eof;
+        }
+        done = c != eof;
+        return c;
+    }
+
+    /**
+     * Reads a character, but skips white space.
+     * @return the character or eof
+     */
+    public char readChar() {
+        return charAfterWhiteSpace();
+    }
+
+    /**
+     * Reads the rest of the current line (including eol) and returns it (excluding eol). A line may be empty.
+     * Lines end at '\n', '\r' or "\r\n".
+     * @return the line
+     */
+    public String readLine() {
+        StringBuilder b = new StringBuilder();
+        char c = read();
+        while (done && c != '\n' && c != '\r') {
+            b.append(c);
+            c = read();
+        }
+        if (c == '\r') {
+            c = read();
+            buf = c != '\n' ? c : empty;
+        }
+        if (b.length() > 0)
+            done = true;
+        return b.toString();
+    }
+
+    /**
+     * Skips white space and reads all characters up to the next white space or the end of the file.
+     * @return the word, or the empty string if there is none, then done() yields false
+     */
+    public String readWord() {
+        StringBuilder b = new StringBuilder();
+        char c = charAfterWhiteSpace();
+        while (done && c > ' ') {
+            b.append(c);
+            c = read();
+        }
+        buf = c;
+        done = b.length() > 0;
+        return b.toString();
+    }
+
+    /**
+     * Skips white space and reads an integer, a sequence of digits possibly preceded by '-'.
+     * @return the integer, or 0 if there is none or it is too big, then done() yields false
+     */
+    public int readInt() {
+        StringBuilder b = new StringBuilder();
+        char c = charAfterWhiteSpace();
+        if (done && c == '-') {
+            b.append(c);
+            c = read();
+        }
+        while (done && Character.isDigit(c)) {
+            b.append(c);
+            c = read();
+        }
+        buf = c;
+        try {
+            done = true;
+            return Integer.parseInt(b.toString());
+        } catch (NumberFormatException e) {
+            done = false;
+            return 0;
+        }
+    }
+
+    /**
+     * Reads from the current position to the end of the file. done() yields always true.
+     * @return the text
+     */
+    public String readFile() {
+        StringBuilder b = new StringBuilder();
+        char c = read();
+        while (done) {
+            b.append(c);
+            c = read();
+        }
+        buf = eof;
+        done = true;
+        return b.toString();
+    }
+
+    /**
+     * Reads from the current position to the end of the file in one go: the rest of the file is read into
+     * a single buffer, sized to the file when the channel knows its size, and decoded at once.
+     * If the file can't be read to its end, done() yields false.
+     * @return the text, from position 0 to the limit of the buffer
+     */
+    public CharBuffer readAll() {
+        CharBuffer text;
+        try {
+            ByteBuffer rest = readRest();
+            text = CharBuffer.allocate(2 + chars.remaining() + (int) (rest.remaining() * decoder.maxCharsPerByte()));
+            if (buf != empty && buf != eof)
+                text.put(buf);
+            text.put(chars);
+            if (!flushed) {
+                while (decoder.decode(rest, text, true).isOverflow())
+                    text = grow(text);
+                while (decoder.flush(text).isOverflow())
+                    text = grow(text);
+                flushed = true;
+            }
+            done = true;
+        } catch (IOException e) {
+            text = CharBuffer.allocate(0);
+            done = false;
+        }
+        buf = eof;
+        text.flip();
+        return text;
+    }
+
+    /**
+     * Skips white space and returns the next character without removing it.
+     * @return the next character
+     */
+    public char peek() {
+        char c = charAfterWhiteSpace();
+        buf = c;
+        return c;
+    }
+
+    /**
+     * Checks if the previous operation was successful.
+     * @return true if the previous read operation could read what was asked for
+     */
+    public boolean done() {
+        return done;
+    }
+
+    /**
+     * Closes the file.
+     */
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // closed anyway
+        }
+    }
+
+    private char charAfterWhiteSpace() {
+        char c;
+        do
+            c = read();
+        while (done && c <= ' ');
+        return c;
+    }
+
+    /**
+     * Reads the bytes that are left in the file, after the ones already read but not decoded yet.
+     * @return the bytes, ready to be decoded
+     */
+    private ByteBuffer readRest() throws IOException {
+        ByteBuffer rest = bytes;
+        if (!endOfInput && channel instanceof SeekableByteChannel) {
+            SeekableByteChannel file = (SeekableByteChannel) channel;
+            long left = file.size() - file.position();
+            if (left >= rest.remaining() && left < Integer.MAX_VALUE - rest.position()) {
+                rest = ByteBuffer.allocate(rest.position() + (int) left + 1);  // one more, so the end is seen
+                bytes.flip();
+                rest.put(bytes);
+            }
+        }
+        while (!endOfInput) {
+            if (!rest.hasRemaining()) {
+                ByteBuffer bigger = ByteBuffer.allocate(rest.capacity() * 2);
+                rest.flip();
+                rest = bigger.put(rest);
+            }
+            if (channel.read(rest) < 0)
+                endOfInput = true;
+        }
+        rest.flip();
+        return rest;
+    }
+
+    private static CharBuffer grow(CharBuffer text) {
+        CharBuffer bigger = CharBuffer.allocate(text.capacity() * 2 + 16);
+        text.flip();
+        return bigger.put(text);
+    }
+
+    /**
+     * Decodes the next characters from the file.
+     * @return false if the end of the file is reached
+     */
+    private boolean fill() throws IOException {
+        if (flushed)
+            return false;
+        chars.clear();
+        while (true) {
+            if (!endOfInput && channel.read(bytes) < 0)
+                endOfInput = true;
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+            if (endOfInput && result.isUnderflow()) {
+                decoder.flush(chars);
+                flushed = true;
+            }
+            if (chars.position() > 0 || flushed) {
+                chars.flip();
+                return chars.hasRemaining();
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package dc.view;
+
+import dc.controller.LevelController;
+import dc.model.Tile;
+import dc.model.TileBoardModel;
+import javafx.collections.ObservableList;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+
+import java.util.BitSet;
+
+/**
+ * A LevelView that draws the board onto canvases instead of using one node per cell.
+ * The board is split into canvases of at most 40x40 cells, so even a 200x200 map doesn't need a texture larger
+ * than a graphics card can hold. Only the cells reported by updateTile or updateTiles are painted again,
+ * so large maps stay fast.
+ */
+public class CanvasLevelView extends LevelView {
+    // cells per side of a canvas, 2000 pixels
+    private static final int CHUNK = 40;
+    // the canvases by row and collum of their chunk
+    private Canvas[][] canvases;
+    // canvases for the size of a level that is likely to be played next, made in the background
+    private volatile Canvas[][] preparedCanvases;
+
+    public CanvasLevelView(TileBoardModel<Tile> model, LevelController controller) {
+        super(model, controller);
+    }
+
+    /**
+     * Adds the canvases to the children and paints every cell.
+     * The canvases are only created again if the size of the level has changed.
+     * @param children the children of the view
+     */
+    protected void drawBoard(ObservableList<Node> children) {
+        if (!fits(canvases, rowCount, colCount)) {
+            Canvas[][] prepared = preparedCanvases;
+            canvases = fits(prepared, rowCount, colCount) ? prepared : makeCanvases(rowCount, colCount);
+            preparedCanvases = null;
+        }
+        for (Canvas[] row : canvases)
+            children.addAll(row);
+        for (int row = 0; row < rowCount; row++)
+            for (int col = 0; col < colCount; col++)
+                updateTile(row, col);
+    }
+
+    /**
+     * Makes the canvases for a level of another size in the background.
+     * @param rows number of rows of the level
+     * @param cols number of collums of the level
+     * @param atlas the image with all sprites
+     */
+    protected void prepareBoard(int rows, int cols, Image atlas) {
+        if (!fits(preparedCanvases, rows, cols) && (rows != rowCount || cols != colCount))
+            preparedCanvases = makeCanvases(rows, cols);
+    }
+
+    /**
+     * Splits a board into chunks and makes a canvas for each, placed where its chunk is.
+     */
+    private static Canvas[][] makeCanvases(int rows, int cols) {
+        Canvas[][] canvases = new Canvas[(rows + CHUNK - 1) / CHUNK][(cols + CHUNK - 1) / CHUNK];
+        for (int r = 0; r < canvases.length; r++)
+            for (int c = 0; c < canvases[r].length; c++) {
+                Canvas canvas = new Canvas(Math.min(CHUNK, cols - c * CHUNK) * 50, Math.min(CHUNK, rows - r * CHUNK) * 50);
+                canvas.relocate(c * CHUNK * 50, r * CHUNK * 50);
+                canvases[r][c] = canvas;
+            }
+        return canvases;
+    }
+
+    private static boolean fits(Canvas[][] canvases, int rows, int cols) {
+        if (canvases == null || canvases.length == 0 || canvases.length != (rows + CHUNK - 1) / CHUNK
+                || canvases[0].length != (cols + CHUNK - 1) / CHUNK)
+            return false;
+        Canvas last = canvases[canvases.length - 1][canvases[0].length - 1];
+        return last.getWidth() == ((cols - 1) % CHUNK + 1) * 50 && last.getHeight() == ((rows - 1) % CHUNK + 1) * 50;
+    }
+
+    /**
+     * Paints a single cell again.
+     * @param row row
+     * @param col collum
+     */
+    public void updateTile(int row, int col) {
+        repaint(row, col);
+    }
+
+    /**
+     * Paints all cells that changed during a turn.
+     * @param cells the changed cells, row * width + col
+     * @param width width of the level
+     */
+    public void updateTiles(BitSet cells, int width) {
+        for (int cell = cells.nextSetBit(0); cell >= 0; cell = cells.nextSetBit(cell + 1))
+            repaint(cell / width, cell % width);
+    }
+
+    private void repaint(int row, int col) {
+        GraphicsContext g = canvases[row / CHUNK][col / CHUNK].getGraphicsContext2D();
+        int x = col % CHUNK * 50, y = row % CHUNK * 50;
+        g.clearRect(x, y, 50, 50);
+        paint(g, model.getBottomTileAt(row, col), x, y);
+        paint(g, model.getTopTileAt(row, col), x, y);
+    }
+
+    /**
+     * Copies the sprite of a tile out of the atlas into a cell of a canvas.
+     * @param x left edge of the cell on the canvas
+     * @param y top edge of the cell on the canvas
+     */
+    private void paint(GraphicsContext g, Tile tile, int x, int y) {
+        if (tile == null)
+            return;
+        SpriteAtlas atlas = getAtlas();
+        Rectangle2D v = atlas.viewport(Sprite.of(tile));
+        g.drawImage(atlas.getImage(), v.getMinX(), v.getMinY(), v.getWidth(), v.getHeight(), x, y, 50, 50);
+    }
+}
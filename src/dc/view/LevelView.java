@@ -3,17 +3,20 @@ package dc.view;
 import dc.controller.LevelController;
 import dc.controller.Movement;
 import dc.controller.TileBoardController;
-import dc.model.List;
+import dc.model.LevelCatalog;
+import dc.model.LevelPrefetcher;
 import dc.model.Tile;
 import dc.model.TileBoardModel;
-import dc.util.In;
 import dc.util.Type;
+import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import javafx.event.EventHandler;
 import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.ChoiceBox;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
@@ -25,24 +28,33 @@ import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextAlignment;
 
+import java.nio.file.Paths;
+
 /**
  * Handles the visual part of DisCaptive
  */
 public class LevelView extends Region implements TileBoardView {
     protected TileBoardModel<Tile> model;
     protected int rowCount, colCount;
-    private Group[][] tileGraphic;
+    private SpriteAtlas atlas;
+    private static LevelCatalog catalog;
+    private TileGrid grid;
+    // nodes for the size of a level that is likely to be played next, built in the background
+    private volatile TileGrid preparedGrid;
     private Text statusLine;
     private TileBoardController controller;
     private Button restart;
     private Button play;
+    private Button undo, redo;
     private ChoiceBox<String> dropDown;
 
     public LevelView(TileBoardModel<Tile> model, LevelController controller) {
         this.model = model;
         rowCount = model.getHeight();
         colCount = model.getWidth();
+        createControls();
         updateView();
+        prefetchNext();
         this.controller = controller;
         setOnKeyPressed(new KeyPressHandler());
         setOnMouseClicked(new MouseClickHandler());
@@ -77,6 +89,14 @@ public class LevelView extends Region implements TileBoardView {
                 case D:
                     dir = Movement.RIGHT;
                     break;
+                case Z:
+                    undoTurn();
+                    event.consume();
+                    return;
+                case Y:
+                    redoTurn();
+                    event.consume();
+                    return;
                 default:
                     updateStatusLine("Not a valid key.");
             }
@@ -103,72 +123,72 @@ public class LevelView extends Region implements TileBoardView {
     }
 
     /**
-     * Checks what kind of tile it is dealing with. Then checks the type and returns the graphic of the specific tile
+     * Looks up the sprite of the tile and returns its graphic
      * @param tile the object that needs to be drawn.
      * @return returns the graphic of tile
      */
     protected Node makeTileGraphic(Tile tile) {
-        switch (tile.getTileType()) {
-            case "Player":
-                if (tile.getType() == Type.NORTH)
-                    return makePlayerGraphic(-90);
-                else if (tile.getType() == Type.EAST)
-                    return makePlayerGraphic(0);
-                else if (tile.getType() == Type.SOUTH)
-                    return makePlayerGraphic(90);
-                else
-                    return makePlayerGraphic(180);
-            case "Box":
+        return makeSpriteGraphic(Sprite.of(tile));
+    }
+
+    /**
+     * Creates the graphic of a sprite.
+     * @param sprite the sprite
+     * @return the graphic
+     */
+    Node makeSpriteGraphic(Sprite sprite) {
+        switch (sprite) {
+            case PLAYER_NORTH:
+                return makePlayerGraphic(-90);
+            case PLAYER_EAST:
+                return makePlayerGraphic(0);
+            case PLAYER_SOUTH:
+                return makePlayerGraphic(90);
+            case PLAYER_WEST:
+                return makePlayerGraphic(180);
+            case BOX:
                 return makeBoxGraphic();
-            case "EmptyPassage":
-                return makeEmptyPassageGraphic();
-            case "Wall":
+            case WALL:
                 return makeWallGraphic();
-            case "PlayerGoal":
+            case GOAL:
                 return makeGoalGraphic();
-            case "Key":
+            case KEY:
                 return makeKeyGraphic();
-            case "OpenLock":
+            case OPEN_LOCK:
                 return makeLockGraphic(true);
-            case "SwitchDirection":
-                if (tile.getType() == Type.LEFT)
-                    return makeTurnLeftGraphic();
-                else
-                    return makeTurnRightGraphic();
-            case "ForceFieldOpener":
-                return makeChipCardGraphic(tile.getType());
-            case "Lock":
+            case LOCK:
                 return makeLockGraphic(false);
-            case "BoxOverGoal":
-                return makeBoxGraphic();
-            case "Guard":
-                if (tile.getType() == Type.EAST)
-                    return makeGuardGraphic(0);
-                else if (tile.getType() == Type.SOUTH)
-                    return makeGuardGraphic(90);
-                else if (tile.getType() == Type.WEST)
-                    return (makeGuardGraphic(180));
-                else if (tile.getType() == Type.NORTH)
-                    return makeGuardGraphic(270);
-                return makeEmptyPassageGraphic();
-            case "Gap":
+            case TURN_LEFT:
+                return makeTurnLeftGraphic();
+            case TURN_RIGHT:
+                return makeTurnRightGraphic();
+            case CHIP_BLUE:
+                return makeChipCardGraphic(Type.BLUE);
+            case CHIP_RED:
+                return makeChipCardGraphic(Type.RED);
+            case GUARD_EAST:
+                return makeGuardGraphic(0);
+            case GUARD_SOUTH:
+                return makeGuardGraphic(90);
+            case GUARD_WEST:
+                return makeGuardGraphic(180);
+            case GUARD_NORTH:
+                return makeGuardGraphic(270);
+            case GAP:
                 return makeTrapGraphic(true);
-            case "ForceField":
-                if (tile.getType() == Type.BLUE)
-                    return makeForceFieldGraphic(Color.BLUE, false);
-                else if (tile.getType() == Type.RED)
-                    return makeForceFieldGraphic(Color.RED, false);
-                else if (tile.getType() == Type.BLUEOPEN) {
-                    return makeForceFieldGraphic(Color.BLUE, true);
-                } else
-                    return makeForceFieldGraphic(Color.RED, true);
-            case "BoxInGap":
+            case BOX_IN_GAP:
                 return makeTrapGraphic(false);
-
+            case FIELD_BLUE:
+                return makeForceFieldGraphic(Color.BLUE, false);
+            case FIELD_RED:
+                return makeForceFieldGraphic(Color.RED, false);
+            case FIELD_BLUE_OPEN:
+                return makeForceFieldGraphic(Color.BLUE, true);
+            case FIELD_RED_OPEN:
+                return makeForceFieldGraphic(Color.RED, true);
             default:
                 return makeEmptyPassageGraphic();
         }
-
     }
 
     protected Node makeEmptyPassageGraphic() {
@@ -508,40 +528,138 @@ public class LevelView extends Region implements TileBoardView {
      */
     public void updateView(){
         getChildren().clear();
-        tileGraphic = new Group[rowCount][colCount];
         ObservableList<Node> myChildren = getChildren();
-        for (int row = 0; row < rowCount; row++) {
+        drawBoard(myChildren);
+
+        statusLine.setText("Welcome to DisCaptive!");
+        statusLine.setFill(Color.BLACK);
+        statusLine.setFont(Font.getDefault());
+        restart.relocate(20, rowCount * 50 + 55);
+        play.relocate(225, rowCount * 50 + 55);
+        dropDown.relocate(130, rowCount * 50 + 55);
+        undo.relocate(335, rowCount * 50 + 55);
+        redo.relocate(445, rowCount * 50 + 55);
+        myChildren.addAll(statusLine, restart, play, dropDown, undo, redo);
+    }
+
+    /**
+     * Creates the statusline, the buttons and the dropdown-menu once, updateView only moves them below the board.
+     * The dropdown-menu is filled from the level catalog and follows it when level files are added or deleted.
+     */
+    private void createControls() {
+        statusLine = new Text();
+
+        restart = new Button("restart");
+        restart.setOnAction( event -> restartMap());
+
+        play = new Button("Play");
+        play.setOnAction(event -> changeLevel());
+
+        undo = new Button("undo");
+        undo.setOnAction(event -> undoTurn());
+
+        redo = new Button("redo");
+        redo.setOnAction(event -> redoTurn());
+
+        dropDown = new ChoiceBox<>();
+        dropDown.valueProperty().addListener((value, old, selected) -> {     // the player is likely to play it next
+            if (selected != null)
+                prefetch(Integer.parseInt(selected.substring(6)));
+        });
+        LevelCatalog levels = getCatalog();
+        for (int no : levels.getLevels())
+            dropDown.getItems().add("Level " + no);
+        levels.addListener(new LevelCatalog.Listener() {
+            public void levelAdded(int no) {
+                Platform.runLater(() -> addToDropDown(no));
+            }
+
+            public void levelRemoved(int no) {
+                Platform.runLater(() -> dropDown.getItems().remove("Level " + no));
+            }
+        });
+    }
+
+    /**
+     * Adds the board to the children and draws every tile.
+     * The nodes of the cells are only created again if the size of the level has changed,
+     * unless nodes of the new size have already been prepared in the background.
+     * @param children the children of the view
+     */
+    protected void drawBoard(ObservableList<Node> children) {
+        if (grid == null || !grid.fits(rowCount, colCount)) {
+            TileGrid prepared = preparedGrid;
+            grid = prepared != null && prepared.fits(rowCount, colCount) ? prepared : new TileGrid(rowCount, colCount, getAtlas().getImage());
+            preparedGrid = null;
+        }
+        for (int row = 0; row < rowCount; row++)
             for (int col = 0; col < colCount; col++) {
-                Tile mt = model.getBottomTileAt(row, col);
-                Group g = new Group(makeTileGraphic(mt));
-                mt = model.getTopTileAt(row, col);
-                if (mt == (null)) {
-                } else {
-                    g.getChildren().add(makeTileGraphic(mt));
+                updateTile(row, col);
+                children.add(grid.tiles[row][col]);
+            }
+    }
+
+    /**
+     * Prepares what drawBoard needs for a level of another size. Called on the background thread of the
+     * LevelPrefetcher, so it must not touch anything that is shown.
+     * @param rows number of rows of the level
+     * @param cols number of collums of the level
+     * @param atlas the image with all sprites
+     */
+    protected void prepareBoard(int rows, int cols, Image atlas) {
+        TileGrid prepared = preparedGrid;
+        if ((prepared == null || !prepared.fits(rows, cols)) && (rows != rowCount || cols != colCount))
+            preparedGrid = new TileGrid(rows, cols, atlas);
+    }
+
+    /**
+     * One group per cell, holding one image for the bottom tile and one for the movable on top.
+     * These nodes are reused for every update of the cell and are placed once, not on every layout pass.
+     */
+    private static class TileGrid {
+        final Group[][] tiles;
+        final ImageView[][] bottom;
+        final ImageView[][] top;
+
+        TileGrid(int rows, int cols, Image atlas) {
+            tiles = new Group[rows][cols];
+            bottom = new ImageView[rows][cols];
+            top = new ImageView[rows][cols];
+            for (int row = 0; row < rows; row++)
+                for (int col = 0; col < cols; col++) {
+                    bottom[row][col] = new ImageView(atlas);
+                    top[row][col] = new ImageView(atlas);
+                    tiles[row][col] = new Group(bottom[row][col], top[row][col]);
+                    tiles[row][col].relocate(col * 50, row * 50);
                 }
+        }
 
-                tileGraphic[row][col] = g;
-                myChildren.add(g);
-            }
-            statusLine = new Text("Welcome to DisCaptive!");
-            myChildren.add(statusLine);
-
-            restart = new Button("restart");
-            restart.relocate(20, rowCount * 50 + 55);
-            myChildren.add(restart);
-            restart.setOnAction( event -> restartMap());
-
-            play = new Button("Play");
-            play.setLayoutX(225);
-            play.setLayoutY(rowCount * 50 + 55);
-            myChildren.add(play);
-            play.setOnAction(event -> changeLevel());
-
-            dropDown = new ChoiceBox<>();
-            dropDown.relocate(130, rowCount * 50 + 55);
-            updateDropDown();
-            myChildren.add(dropDown);
-            play.getScene();
+        boolean fits(int rows, int cols) {
+            return tiles.length == rows && (rows == 0 || tiles[0].length == cols);
+        }
+    }
+
+    /**
+     * Returns the atlas with all sprites, it is drawn the first time it is needed.
+     * @return the atlas
+     */
+    SpriteAtlas getAtlas() {
+        if (atlas == null)
+            atlas = new SpriteAtlas(this::makeSpriteGraphic, 150);
+        return atlas;
+    }
+
+    /**
+     * Shows a tile in an image view by moving the viewport of the atlas to its sprite.
+     * @param graphic the image view
+     * @param tile the tile, null hides the image view
+     */
+    private void showTile(ImageView graphic, Tile tile) {
+        if (tile == null) {
+            graphic.setVisible(false);
+        } else {
+            graphic.setViewport(getAtlas().viewport(Sprite.of(tile)));
+            graphic.setVisible(true);
         }
     }
 
@@ -550,6 +668,7 @@ public class LevelView extends Region implements TileBoardView {
      * It first checks if there is a level selected yet, if not it tells the statusline to update.
      * If a level is selected it takes the level-number from the string and tells the model to start another level.
      * Once the model has changed the level, the view will clear everything off the screen and draws the new level.
+     * The level after it is read in the background meanwhile.
      * Then it resizes the window and tells the controller to become active again.
      */
     private void changeLevel(){
@@ -562,8 +681,8 @@ public class LevelView extends Region implements TileBoardView {
             model.startNewLevel(a);
             rowCount = model.getHeight();
             colCount = model.getWidth();
-            getChildren().clear();
             updateView();
+            prefetchNext();
             play.getScene().getWindow().sizeToScene();
             controller.handleRestart(this);
         }
@@ -581,15 +700,70 @@ public class LevelView extends Region implements TileBoardView {
     }
 
     /**
-     * Updates the dropdown-menu for the levels.
-     * Checks for all levels that are saved as "Level" int ".txt" between 1 and 1000 and adds them to the dropdown menu.
+     * Tells the model to take back the last turn, the model tells the views which tiles changed.
+     * Then tells the controller to become active again, in case the turn had won or lost the level.
+     */
+    private void undoTurn() {
+        if (model.undo()) {
+            statusLine.setFill(Color.BLACK);
+            statusLine.setFont(Font.getDefault());
+            controller.handleUndo(this);
+        }
+    }
+
+    /**
+     * Tells the model to play the last turn that was taken back again.
+     */
+    private void redoTurn() {
+        model.redo();
+    }
+
+    /**
+     * Reads a level in the background and prepares the board for its size.
+     * @param no number of the level
+     */
+    private void prefetch(int no) {
+        Image image = getAtlas().getImage();
+        LevelPrefetcher.shared().prefetch(no, (level, height, width) -> prepareBoard(height, width, image));
+    }
+
+    /**
+     * Prefetches the level that follows the one that is played now.
+     */
+    private void prefetchNext() {
+        for (int no : getCatalog().getLevels())
+            if (no > model.getLevelNumber()) {
+                prefetch(no);
+                return;
+            }
+    }
+
+    /**
+     * Returns the catalog of the levels in the working directory, which is shared by all views.
+     * It is scanned once and then watched for added or deleted level files.
+     * @return the catalog
      */
-    private void updateDropDown(){
-        for(int i = 0; i<1000; i++){
-            In.open("Level" + i + ".txt");
-            if(In.done())
-                dropDown.getItems().add("Level " + i);
+    private static synchronized LevelCatalog getCatalog() {
+        if (catalog == null) {
+            catalog = new LevelCatalog(Paths.get(""));
+            catalog.startWatching();
         }
+        return catalog;
+    }
+
+    /**
+     * Adds a level to the dropdown-menu, keeping the levels in order.
+     * @param no number of the level
+     */
+    private void addToDropDown(int no) {
+        ObservableList<String> items = dropDown.getItems();
+        String item = "Level " + no;
+        if (items.contains(item))
+            return;
+        int i = 0;
+        while (i < items.size() && Integer.parseInt(items.get(i).substring(6)) < no)
+            i++;
+        items.add(i, item);
     }
 
     /**
@@ -629,18 +803,8 @@ public class LevelView extends Region implements TileBoardView {
      * @param col collum
      */
     public void updateTile(int row, int col) {
-        ObservableList<Node> myChildren = getChildren();
-        Tile mt = model.getBottomTileAt(row, col);
-        Group g = new Group(makeTileGraphic(mt));
-        mt = model.getTopTileAt(row, col);
-        if (mt == (null)) {
-            //myChildren.remove(1);
-        } else {
-            g.getChildren().add(makeTileGraphic(mt));
-        }
-
-        tileGraphic[row][col] = g;
-        myChildren.add(g);
+        showTile(grid.bottom[row][col], model.getBottomTileAt(row, col));
+        showTile(grid.top[row][col], model.getTopTileAt(row, col));
     }
 
     /**
@@ -662,16 +826,11 @@ public class LevelView extends Region implements TileBoardView {
     }
 
     /**
-     * Lays out the children, statusline, choicebox and buttons.
-     * Lays out the children and relocates, resizes and restyles the statusline, restart-button and play-button.
+     * Lays out the statusline, choicebox and buttons.
+     * Relocates, resizes and restyles the statusline, restart-button, play-button and the undo- and redo-buttons. The tiles are placed when they are created.
      */
     protected void layoutChildren() {
         super.layoutChildren();
-        for (int row = 0; row < rowCount; row++)
-            for (int col = 0; col < colCount; col++) {
-                Group g = tileGraphic[row][col];
-                g.relocate(col * 50, row * 50);
-            }
         statusLine.relocate(10, rowCount * 50 + 20);
         statusLine.resize(colCount * 50, 30);
         statusLine.setWrappingWidth(colCount * 50);
@@ -686,6 +845,12 @@ public class LevelView extends Region implements TileBoardView {
         play.setTextAlignment(TextAlignment.CENTER);
         play.setStyle("-fx-font-size: 20");
 
+        for (Button button : new Button[]{undo, redo}) {
+            button.resize(100, 40);
+            button.setTextAlignment(TextAlignment.CENTER);
+            button.setStyle("-fx-font-size: 20");
+        }
+
     }
 
 
@@ -0,0 +1,91 @@
+package dc.view;
+
+import dc.model.Tile;
+import dc.model.TileKind;
+import dc.util.Type;
+
+/**
+ * Every graphic a tile can be drawn with, one per kind of tile and direction or color.
+ */
+enum Sprite {
+    EMPTY, WALL, GOAL, KEY, LOCK, OPEN_LOCK, TURN_LEFT, TURN_RIGHT, CHIP_BLUE, CHIP_RED,
+    FIELD_BLUE, FIELD_RED, FIELD_BLUE_OPEN, FIELD_RED_OPEN, GAP, BOX_IN_GAP, BOX,
+    PLAYER_NORTH, PLAYER_EAST, PLAYER_SOUTH, PLAYER_WEST, GUARD_NORTH, GUARD_EAST, GUARD_SOUTH, GUARD_WEST;
+
+    // indexed by TileKind and Type, the last column is for tiles without a type
+    private static final Sprite[][] TABLE = new Sprite[TileKind.values().length][Type.values().length + 1];
+
+    static {
+        for (TileKind kind : TileKind.values()) {
+            for (Type type : Type.values())
+                TABLE[kind.ordinal()][type.ordinal()] = select(kind, type);
+            TABLE[kind.ordinal()][Type.values().length] = select(kind, null);
+        }
+    }
+
+    /**
+     * Looks up the sprite of a tile.
+     * @param tile the tile
+     * @return its sprite
+     */
+    static Sprite of(Tile tile) {
+        Type type = tile.getType();
+        return TABLE[tile.getKind().ordinal()][type == null ? Type.values().length : type.ordinal()];
+    }
+
+    private static Sprite select(TileKind kind, Type type) {
+        switch (kind) {
+            case PLAYER:
+                if (type == Type.NORTH)
+                    return PLAYER_NORTH;
+                else if (type == Type.EAST)
+                    return PLAYER_EAST;
+                else if (type == Type.SOUTH)
+                    return PLAYER_SOUTH;
+                else
+                    return PLAYER_WEST;
+            case BOX:
+            case BOX_OVER_GOAL:
+                return BOX;
+            case WALL:
+                return WALL;
+            case PLAYER_GOAL:
+                return GOAL;
+            case KEY:
+                return KEY;
+            case OPEN_LOCK:
+                return OPEN_LOCK;
+            case SWITCH_DIRECTION:
+                return type == Type.LEFT ? TURN_LEFT : TURN_RIGHT;
+            case FORCE_FIELD_OPENER:
+                return type == Type.BLUE ? CHIP_BLUE : CHIP_RED;
+            case LOCK:
+                return LOCK;
+            case GUARD:
+                if (type == Type.EAST)
+                    return GUARD_EAST;
+                else if (type == Type.SOUTH)
+                    return GUARD_SOUTH;
+                else if (type == Type.WEST)
+                    return GUARD_WEST;
+                else if (type == Type.NORTH)
+                    return GUARD_NORTH;
+                return EMPTY;
+            case GAP:
+                return GAP;
+            case FORCE_FIELD:
+                if (type == Type.BLUE)
+                    return FIELD_BLUE;
+                else if (type == Type.RED)
+                    return FIELD_RED;
+                else if (type == Type.BLUEOPEN)
+                    return FIELD_BLUE_OPEN;
+                else
+                    return FIELD_RED_OPEN;
+            case BOX_IN_GAP:
+                return BOX_IN_GAP;
+            default:
+                return EMPTY;
+        }
+    }
+}
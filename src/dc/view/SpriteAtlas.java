@@ -0,0 +1,66 @@
+package dc.view;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.function.Function;
+
+/**
+ * All sprites drawn once into a single image.
+ * Views pick a sprite by its viewport, so drawing a tile only copies pixels out of this image.
+ */
+class SpriteAtlas {
+    private final WritableImage image;
+    private final Rectangle2D[] viewports = new Rectangle2D[Sprite.values().length];
+
+    /**
+     * Draws every sprite once and copies it into the atlas, all in one row.
+     * Every sprite is the whole cell, not only the part the graphic covers, so a graphic that is smaller than
+     * the cell, like the box, keeps its place in it.
+     * Has to be called on the JavaFX application thread.
+     * @param painter creates the graphic of a sprite
+     * @param size width and height of a cell in the coordinates of the graphics, before they are scaled
+     */
+    SpriteAtlas(Function<Sprite, Node> painter, double size) {
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        Image[] sprites = new Image[viewports.length];
+        int width = 0, height = 0;
+        for (Sprite sprite : Sprite.values()) {
+            Node graphic = painter.apply(sprite);
+            Bounds cell = graphic.localToParent(new BoundingBox(0, 0, size, size));
+            parameters.setViewport(new Rectangle2D(cell.getMinX(), cell.getMinY(), cell.getWidth(), cell.getHeight()));
+            Image snapshot = graphic.snapshot(parameters, null);
+            sprites[sprite.ordinal()] = snapshot;
+            width += (int) snapshot.getWidth();
+            height = Math.max(height, (int) snapshot.getHeight());
+        }
+        image = new WritableImage(width, height);
+        int x = 0;
+        for (Sprite sprite : Sprite.values()) {
+            Image snapshot = sprites[sprite.ordinal()];
+            int w = (int) snapshot.getWidth(), h = (int) snapshot.getHeight();
+            image.getPixelWriter().setPixels(x, 0, w, h, snapshot.getPixelReader(), 0, 0);
+            viewports[sprite.ordinal()] = new Rectangle2D(x, 0, w, h);
+            x += w;
+        }
+    }
+
+    Image getImage() {
+        return image;
+    }
+
+    /**
+     * @param sprite the sprite
+     * @return where the sprite is in the atlas
+     */
+    Rectangle2D viewport(Sprite sprite) {
+        return viewports[sprite.ordinal()];
+    }
+}
@@ -1,6 +1,8 @@
 package dc.view;
 
-import dc.model.List;
+import dc.controller.Movement;
+
+import java.util.BitSet;
 
 /**
  * Interface for Levelview
@@ -14,6 +16,18 @@ public interface TileBoardView {
      */
     void updateTile (int rowNr, int colNr);
 
+    /**
+     * tells the view to update all tiles that changed during a turn, every tile once.
+     * The set belongs to the model and is only valid during the call.
+     * Views that don't need more than updateTile get it called once per cell.
+     * @param cells the changed cells, row * width + col
+     * @param width width of the level
+     */
+    default void updateTiles (BitSet cells, int width) {
+        for (int cell = cells.nextSetBit(0); cell >= 0; cell = cells.nextSetBit(cell + 1))
+            updateTile(cell / width, cell % width);
+    }
+
     /**
      * updates the statusline
      * @param text text for the statusline
@@ -35,5 +49,21 @@ public interface TileBoardView {
      */
     void updateView();
 
+    /**
+     * tells the view that a turn was played, after it is over, for views that record the game.
+     * Also called for the turns that are played again by redo.
+     * @param direction the movement of the player in that turn
+     */
+    default void turnPlayed(Movement direction) {
+    }
+
+    /**
+     * tells the view that turns were taken back, for views that record the game.
+     * The level is as it was before the last movements, turns that didn't change anything included.
+     * @param movements how many of the last movements were taken back
+     */
+    default void turnsTakenBack(int movements) {
+    }
+
 
 }